@@ -0,0 +1,24 @@
+package com.hmdp.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标记支持幂等重试的接口：请求头携带 Idempotency-Key 时，
+ * 有效期内相同 key 的重复请求直接返回第一次的成功响应，不再执行业务逻辑
+ * @author Ghost
+ * @version 1.0
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Idempotent {
+
+    /**
+     * 保存第一次响应的时长，单位：秒
+     */
+    long expireSeconds() default 600;
+}
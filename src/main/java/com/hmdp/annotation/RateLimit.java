@@ -0,0 +1,46 @@
+package com.hmdp.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Repeatable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 滑动窗口限流：window 秒内同一个 key 最多允许 limit 次请求，超出时直接返回失败。
+ * 可以重复标注多条规则（例如按手机号、按 IP），一次请求的所有规则通过一次 Lua 调用校验
+ * @author Ghost
+ * @version 1.0
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Repeatable(RateLimits.class)
+public @interface RateLimit {
+
+    /**
+     * 规则名称，作为 Redis key 的一部分，例如 code:phone
+     */
+    String name();
+
+    /**
+     * 限流维度，SpEL 表达式，可以引用方法参数（例如 #phone、#loginForm.phone）以及客户端 IP（#ip）
+     */
+    String key();
+
+    /**
+     * 窗口长度，单位：秒
+     */
+    long window();
+
+    /**
+     * 窗口内最多允许的请求数
+     */
+    int limit();
+
+    /**
+     * 超出限制时返回的错误信息
+     */
+    String message() default "操作过于频繁，请稍后再试！";
+}
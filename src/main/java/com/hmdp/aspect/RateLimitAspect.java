@@ -0,0 +1,149 @@
+package com.hmdp.aspect;
+
+import cn.hutool.core.lang.UUID;
+import cn.hutool.core.util.StrUtil;
+import com.hmdp.annotation.RateLimit;
+import com.hmdp.dto.Result;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.expression.MethodBasedEvaluationContext;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.annotation.Resource;
+import javax.servlet.http.HttpServletRequest;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.utils.RedisConstants.RATE_LIMIT_KEY;
+
+/**
+ * 滑动窗口限流切面：解析方法上的 {@link RateLimit} 规则，通过一次 Lua 调用校验并记录本次请求
+ * @author Ghost
+ * @version 1.0
+ */
+@Slf4j
+@Aspect
+@Component
+public class RateLimitAspect {
+
+    private static final DefaultRedisScript<Long> RATE_LIMIT_SCRIPT;
+
+    /**
+     * 初始化 Lua 脚本
+     */
+    static {
+        RATE_LIMIT_SCRIPT = new DefaultRedisScript<>();
+        RATE_LIMIT_SCRIPT.setLocation(new ClassPathResource("rate_limit.lua"));
+        RATE_LIMIT_SCRIPT.setResultType(Long.class);
+    }
+
+    private final SpelExpressionParser parser = new SpelExpressionParser();
+    private final ParameterNameDiscoverer parameterNameDiscoverer = new DefaultParameterNameDiscoverer();
+    /**
+     * 解析过的 SpEL 表达式
+     */
+    private final Map<String, Expression> expressions = new ConcurrentHashMap<>();
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 受信任的反向代理地址（逗号分隔，精确匹配），只有直连地址是受信任的代理时才读取 X-Forwarded-For
+     */
+    @Value("${hmdp.rate-limit.trusted-proxies:127.0.0.1,0:0:0:0:0:0:0:1}")
+    private String[] trustedProxies;
+
+    @Around("@annotation(com.hmdp.annotation.RateLimit) || @annotation(com.hmdp.annotation.RateLimits)")
+    public Object around(ProceedingJoinPoint joinPoint) throws Throwable {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        RateLimit[] rules = method.getAnnotationsByType(RateLimit.class);
+
+        // 1. 计算每条规则的 key，限流维度为空的规则跳过（例如没有传手机号，交给业务校验）
+        MethodBasedEvaluationContext context = new MethodBasedEvaluationContext(
+                null, method, joinPoint.getArgs(), parameterNameDiscoverer);
+        context.setVariable("ip", clientIp());
+        List<RateLimit> applied = new ArrayList<>(rules.length);
+        List<String> keys = new ArrayList<>(rules.length);
+        List<String> args = new ArrayList<>(rules.length * 2 + 2);
+        args.add(String.valueOf(System.currentTimeMillis()));
+        args.add(UUID.fastUUID().toString(true));
+        for (RateLimit rule : rules) {
+            Object value = expressions.computeIfAbsent(rule.key(), parser::parseExpression).getValue(context);
+            if (value == null || StrUtil.isBlankIfStr(value)) {
+                continue;
+            }
+            applied.add(rule);
+            keys.add(RATE_LIMIT_KEY + rule.name() + ":" + value);
+            args.add(String.valueOf(TimeUnit.SECONDS.toMillis(rule.window())));
+            args.add(String.valueOf(rule.limit()));
+        }
+        if (keys.isEmpty()) {
+            return joinPoint.proceed();
+        }
+
+        // 2. 一次 Lua 调用校验所有规则
+        Long violated;
+        try {
+            violated = stringRedisTemplate.execute(RATE_LIMIT_SCRIPT, keys, args.toArray());
+        } catch (Exception e) {
+            // Redis 不可用时放行，不影响正常请求
+            log.error("限流校验失败，放行请求", e);
+            return joinPoint.proceed();
+        }
+        if (violated != null && violated > 0) {
+            RateLimit rule = applied.get(violated.intValue() - 1);
+            log.warn("触发限流规则 {}，key：{}", rule.name(), keys.get(violated.intValue() - 1));
+            return Result.fail(rule.message());
+        }
+        return joinPoint.proceed();
+    }
+
+    /**
+     * 获取客户端 IP：直连地址不是受信任的代理时直接使用直连地址（客户端可以任意伪造 X-Forwarded-For）；
+     * 否则从 X-Forwarded-For 的最右边向左，取第一个不是受信任代理的地址
+     */
+    private String clientIp() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (!(attributes instanceof ServletRequestAttributes)) {
+            return null;
+        }
+        HttpServletRequest request = ((ServletRequestAttributes) attributes).getRequest();
+        String remote = request.getRemoteAddr();
+        String forwarded = request.getHeader("X-Forwarded-For");
+        if (!isTrustedProxy(remote) || StrUtil.isBlank(forwarded)) {
+            return remote;
+        }
+        String[] hops = forwarded.split(",");
+        for (int i = hops.length - 1; i >= 0; i--) {
+            String hop = StrUtil.trim(hops[i]);
+            if (StrUtil.isNotEmpty(hop) && !isTrustedProxy(hop)) {
+                return hop;
+            }
+        }
+        // 整条链路都是受信任的代理
+        return remote;
+    }
+
+    private boolean isTrustedProxy(String address) {
+        return Arrays.asList(trustedProxies).contains(address);
+    }
+}
@@ -0,0 +1,68 @@
+package com.hmdp.config;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hmdp.annotation.Idempotent;
+import com.hmdp.dto.Result;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.MethodParameter;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import javax.annotation.Resource;
+import javax.servlet.http.HttpServletRequest;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.interceptor.IdempotencyInterceptor.RECORD_KEY_ATTRIBUTE;
+import static com.hmdp.interceptor.IdempotencyInterceptor.RECORD_SAVED_ATTRIBUTE;
+
+/**
+ * 保存幂等请求第一次的成功响应，供重复请求回放
+ * @author Ghost
+ * @version 1.0
+ */
+@Slf4j
+@RestControllerAdvice
+public class IdempotentResponseAdvice implements ResponseBodyAdvice<Object> {
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private ObjectMapper objectMapper;
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return returnType.hasMethodAnnotation(Idempotent.class);
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        if (!(request instanceof ServletServerHttpRequest) || !(body instanceof Result)) {
+            return body;
+        }
+        HttpServletRequest servletRequest = ((ServletServerHttpRequest) request).getServletRequest();
+        String key = (String) servletRequest.getAttribute(RECORD_KEY_ATTRIBUTE);
+        // 只保存成功的响应，失败的请求（例如限流、库存不足）允许客户端重试
+        if (key == null || !((Result) body).getSuccess()) {
+            return body;
+        }
+        Idempotent idempotent = returnType.getMethodAnnotation(Idempotent.class);
+        try {
+            stringRedisTemplate.opsForValue().set(
+                    key, objectMapper.writeValueAsString(body), idempotent.expireSeconds(), TimeUnit.SECONDS);
+            servletRequest.setAttribute(RECORD_SAVED_ATTRIBUTE, Boolean.TRUE);
+        } catch (JsonProcessingException e) {
+            log.error("保存幂等响应失败，key：{}", key, e);
+        }
+        return body;
+    }
+}
@@ -1,7 +1,9 @@
 package com.hmdp.config;
 
+import com.hmdp.interceptor.IdempotencyInterceptor;
 import com.hmdp.interceptor.LoginInterceptor;
 import com.hmdp.interceptor.RefreshTokenInterceptor;
+import com.hmdp.utils.LoginTokenManager;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
@@ -19,6 +21,8 @@ public class MvcConfig implements WebMvcConfigurer {
 
     @Resource
     private StringRedisTemplate stringRedisTemplate;
+    @Resource
+    private LoginTokenManager loginTokenManager;
 
     /**
      * 配置登录校验拦截器
@@ -33,11 +37,14 @@ public class MvcConfig implements WebMvcConfigurer {
                         "/shop-type/**",
                         "/upload/**",
                         "/blog/hot",
+                        "/blog/hot/scroll",
                         "/user/code",
                         "/user/login"
                 ).order(1);
         // token 更新拦截器
-        registry.addInterceptor(new RefreshTokenInterceptor(stringRedisTemplate)).addPathPatterns("/**").order(0);
+        registry.addInterceptor(new RefreshTokenInterceptor(stringRedisTemplate, loginTokenManager)).addPathPatterns("/**").order(0);
+        // 幂等拦截器，在登录校验之后执行，按用户隔离幂等记录，未登录的请求不做幂等处理
+        registry.addInterceptor(new IdempotencyInterceptor(stringRedisTemplate)).addPathPatterns("/**").order(2);
     }
 
 }
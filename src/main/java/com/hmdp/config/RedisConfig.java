@@ -0,0 +1,40 @@
+package com.hmdp.config;
+
+import com.hmdp.utils.FollowGraph;
+import com.hmdp.utils.RedisLockNotifier;
+import com.hmdp.utils.SeckillResultNotifier;
+import com.hmdp.utils.SimpleRedisLock;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.PatternTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+/**
+ * Redis 配置类
+ * @author Ghost
+ * @version 1.0
+ */
+@Configuration
+public class RedisConfig {
+
+    /**
+     * 订阅分布式锁的解锁通知、关注关系变化事件、秒杀订单结果通知
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(
+            RedisConnectionFactory connectionFactory, RedisLockNotifier redisLockNotifier,
+            FollowGraph followGraph, SeckillResultNotifier seckillResultNotifier,
+            StringRedisTemplate stringRedisTemplate) {
+        // 预加载锁相关的 Lua 脚本，之后都通过 EVALSHA 执行
+        SimpleRedisLock.loadScripts(stringRedisTemplate);
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(redisLockNotifier, new PatternTopic(RedisLockNotifier.CHANNEL_PATTERN));
+        container.addMessageListener(followGraph, new ChannelTopic(FollowGraph.CHANNEL));
+        container.addMessageListener(seckillResultNotifier, new ChannelTopic(SeckillResultNotifier.CHANNEL));
+        return container;
+    }
+}
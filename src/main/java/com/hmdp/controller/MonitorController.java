@@ -0,0 +1,31 @@
+package com.hmdp.controller;
+
+import com.hmdp.dto.Result;
+import com.hmdp.utils.LockMonitor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.annotation.Resource;
+
+/**
+ * 运行状态监控相关接口
+ * @author Ghost
+ * @version 1.0
+ */
+@RestController
+@RequestMapping("/monitor")
+public class MonitorController {
+
+    @Resource
+    private LockMonitor lockMonitor;
+
+    /**
+     * 查询分布式锁竞争统计：获取耗时、持有时长、失败率以及持有期间过期的次数
+     * @return 按锁名称前缀汇总的统计
+     */
+    @GetMapping("lock")
+    public Result queryLockStats() {
+        return Result.ok(lockMonitor.stats());
+    }
+}
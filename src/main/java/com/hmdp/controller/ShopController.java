@@ -2,14 +2,17 @@ package com.hmdp.controller;
 
 
 import cn.hutool.core.util.StrUtil;
+import com.hmdp.annotation.Idempotent;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.hmdp.dto.Result;
 import com.hmdp.entity.Shop;
 import com.hmdp.service.IShopService;
+import com.hmdp.utils.CursorUtils;
 import com.hmdp.utils.SystemConstants;
 import org.springframework.web.bind.annotation.*;
 
 import javax.annotation.Resource;
+import java.util.List;
 
 /**
  * @author Ghost
@@ -37,6 +40,7 @@ public class ShopController {
      * @param shop 商铺数据
      * @return 商铺id
      */
+    @Idempotent
     @PostMapping
     public Result saveShop(@RequestBody Shop shop) {
         // 写入数据库
@@ -66,10 +70,10 @@ public class ShopController {
             @RequestParam("typeId") Integer typeId,
             @RequestParam(value = "current", defaultValue = "1") Integer current
     ) {
-        // 根据类型分页查询
+        // 根据类型分页查询，不需要总数，跳过 COUNT 查询
         Page<Shop> page = shopService.query()
                 .eq("type_id", typeId)
-                .page(new Page<>(current, SystemConstants.DEFAULT_PAGE_SIZE));
+                .page(new Page<>(current, SystemConstants.DEFAULT_PAGE_SIZE, false));
         // 返回数据
         return Result.ok(page.getRecords());
     }
@@ -85,11 +89,58 @@ public class ShopController {
             @RequestParam(value = "name", required = false) String name,
             @RequestParam(value = "current", defaultValue = "1") Integer current
     ) {
-        // 根据类型分页查询
+        // 根据名称分页查询，不需要总数，跳过 COUNT 查询
         Page<Shop> page = shopService.query()
                 .like(StrUtil.isNotBlank(name), "name", name)
-                .page(new Page<>(current, SystemConstants.MAX_PAGE_SIZE));
+                .page(new Page<>(current, SystemConstants.MAX_PAGE_SIZE, false));
         // 返回数据
         return Result.ok(page.getRecords());
     }
+
+    /**
+     * 根据商铺类型滚动查询商铺信息：按 id 从游标位置开始取一页，翻页深度不影响查询速度
+     * @param typeId 商铺类型
+     * @param cursor 上一页返回的游标，第一页不传
+     * @return 商铺列表和下一页的游标
+     */
+    @GetMapping("/of/type/scroll")
+    public Result queryShopByTypeOfScroll(
+            @RequestParam("typeId") Integer typeId,
+            @RequestParam(value = "cursor", required = false) String cursor
+    ) {
+        long[] last = CursorUtils.decode(cursor);
+        if (last == null || last.length > 1) {
+            return Result.fail("无效的游标！");
+        }
+        // 走 (type_id, id) 索引，从游标位置开始取一页，多取一条用于判断是否还有下一页
+        List<Shop> shops = shopService.query()
+                .eq("type_id", typeId)
+                .gt(last.length == 1, "id", last.length == 1 ? last[0] : null)
+                .orderByAsc("id").last("LIMIT " + (SystemConstants.DEFAULT_PAGE_SIZE + 1)).list();
+        return Result.ok(CursorUtils.toScrollResult(shops, SystemConstants.DEFAULT_PAGE_SIZE,
+                shop -> new long[]{shop.getId()}));
+    }
+
+    /**
+     * 根据商铺名称关键字滚动查询商铺信息：按主键顺序从游标位置开始扫描，取够一页即停止
+     * @param name 商铺名称关键字
+     * @param cursor 上一页返回的游标，第一页不传
+     * @return 商铺列表和下一页的游标
+     */
+    @GetMapping("/of/name/scroll")
+    public Result queryShopByNameOfScroll(
+            @RequestParam(value = "name", required = false) String name,
+            @RequestParam(value = "cursor", required = false) String cursor
+    ) {
+        long[] last = CursorUtils.decode(cursor);
+        if (last == null || last.length > 1) {
+            return Result.fail("无效的游标！");
+        }
+        List<Shop> shops = shopService.query()
+                .like(StrUtil.isNotBlank(name), "name", name)
+                .gt(last.length == 1, "id", last.length == 1 ? last[0] : null)
+                .orderByAsc("id").last("LIMIT " + (SystemConstants.MAX_PAGE_SIZE + 1)).list();
+        return Result.ok(CursorUtils.toScrollResult(shops, SystemConstants.MAX_PAGE_SIZE,
+                shop -> new long[]{shop.getId()}));
+    }
 }
@@ -1,6 +1,7 @@
 package com.hmdp.controller;
 
 
+import com.hmdp.annotation.RateLimit;
 import com.hmdp.dto.LoginFormDTO;
 import com.hmdp.dto.Result;
 import com.hmdp.dto.UserDTO;
@@ -36,6 +37,9 @@ public class UserController {
     /**
      * 发送手机验证码
      */
+    @RateLimit(name = "code:phone", key = "#phone", window = 60, limit = 1, message = "验证码发送过于频繁，请一分钟后再试！")
+    @RateLimit(name = "code:phone:hour", key = "#phone", window = 3600, limit = 5, message = "验证码发送次数过多，请稍后再试！")
+    @RateLimit(name = "code:ip", key = "#ip", window = 3600, limit = 20)
     @PostMapping("code")
     public Result sendCode(@RequestParam("phone") String phone, HttpSession session) {
         return userService.sendCode(phone, session);
@@ -45,6 +49,8 @@ public class UserController {
      * 登录功能
      * @param loginForm 登录参数，包含手机号、验证码；或者手机号、密码
      */
+    @RateLimit(name = "login:phone", key = "#loginForm.phone", window = 300, limit = 5, message = "登录尝试次数过多，请五分钟后再试！")
+    @RateLimit(name = "login:ip", key = "#ip", window = 60, limit = 30)
     @PostMapping("/login")
     public Result login(@RequestBody LoginFormDTO loginForm, HttpSession session){
         return userService.login(loginForm, session);
@@ -55,9 +61,8 @@ public class UserController {
      * @return 无
      */
     @PostMapping("/logout")
-    public Result logout(){
-        // TODO 实现登出功能
-        return Result.fail("功能未完成");
+    public Result logout(@RequestHeader("authorization") String token){
+        return userService.logout(token);
     }
 
     /**
@@ -70,10 +75,30 @@ public class UserController {
         return Result.ok(user);
     }
 
+    /**
+     * 修改当前登录用户的昵称、头像
+     * @param profile 新的昵称、头像
+     * @return
+     */
+    @PutMapping("/me")
+    public Result updateMe(@RequestBody UserDTO profile) {
+        return userService.updateProfile(profile);
+    }
+
+    /**
+     * 修改当前登录用户的详情
+     * @param userInfo 用户详情
+     * @return
+     */
+    @PutMapping("/info")
+    public Result updateInfo(@RequestBody UserInfo userInfo) {
+        return userInfoService.updateUserInfo(userInfo);
+    }
+
     @GetMapping("/info/{id}")
     public Result info(@PathVariable("id") Long userId){
-        // 查询详情
-        UserInfo info = userInfoService.getById(userId);
+        // 查询详情，优先查询缓存
+        UserInfo info = userInfoService.getUserInfo(userId);
         if (info == null) {
             // 没有详情，应该是第一次查看详情
             return Result.ok();
@@ -1,15 +1,24 @@
 package com.hmdp.controller;
 
 
+import com.hmdp.annotation.Idempotent;
+import com.hmdp.dto.AdmissionResultDTO;
+import com.hmdp.dto.AdmissionStatsDTO;
 import com.hmdp.dto.Result;
 import com.hmdp.service.IVoucherOrderService;
 import com.hmdp.service.impl.VoucherOrderServiceImpl;
+import com.hmdp.utils.SeckillAdmissionGate;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import javax.annotation.Resource;
+import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 优惠券下单相关接口
@@ -23,13 +32,55 @@ public class VoucherOrderController {
     @Resource
     private IVoucherOrderService voucherOrderService;
 
+    @Resource
+    private SeckillAdmissionGate seckillAdmissionGate;
+
     /**
      * 抢购秒杀优惠券
      * @param voucherId
      * @return
      */
+    @Idempotent
     @PostMapping("seckill/{id}")
-    public Result seckillVoucher(@PathVariable("id") Long voucherId) {
+    public Result seckillVoucher(@PathVariable("id") Long voucherId, HttpServletResponse response) {
+        // 准入控制，没有放行的请求不再争抢锁和数据库连接
+        AdmissionResultDTO admission = seckillAdmissionGate.tryAdmit(voucherId);
+        if (!admission.getAdmitted()) {
+            if (admission.getRetryAfterMillis() == null) {
+                return Result.fail("库存不足！");
+            }
+            // 返回排队位置和建议的重试间隔
+            response.setHeader("Retry-After", String.valueOf(
+                    TimeUnit.MILLISECONDS.toSeconds(admission.getRetryAfterMillis() + 999)));
+            return new Result(false, "抢购人数过多，请稍后再试！", admission, null);
+        }
         return voucherOrderService.seckillVoucher(voucherId);
     }
+
+    /**
+     * 查询秒杀订单处理结果，订单处理中时可以通过 timeout 挂起请求（长轮询），处理完成后立即返回
+     * @param orderId 订单id
+     * @param timeout 最多挂起的毫秒数，默认立即返回
+     * @return 订单处理结果
+     */
+    @GetMapping("result/{id}")
+    public DeferredResult<Result> queryOrderResult(
+            @PathVariable("id") Long orderId,
+            @RequestParam(value = "timeout", defaultValue = "0") Long timeout) {
+        return voucherOrderService.queryOrderResult(orderId, timeout);
+    }
+
+    /**
+     * 查询秒杀券的实时准入统计：放行速率、排队人数等
+     * @param voucherId 优惠券id
+     * @return 准入统计
+     */
+    @GetMapping("admission/{id}")
+    public Result queryAdmissionStats(@PathVariable("id") Long voucherId) {
+        AdmissionStatsDTO stats = seckillAdmissionGate.stats(voucherId);
+        if (stats == null) {
+            return Result.fail("该优惠券暂无抢购请求！");
+        }
+        return Result.ok(stats);
+    }
 }
@@ -0,0 +1,36 @@
+package com.hmdp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 秒杀准入结果，没有放行时告诉客户端排在第几位、多久之后再试
+ * @author Ghost
+ * @version 1.0
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AdmissionResultDTO {
+    /**
+     * 是否放行
+     */
+    private Boolean admitted;
+    /**
+     * 估算的排队位置（前面还有多少个请求），已售罄时为 null
+     */
+    private Long position;
+    /**
+     * 建议的重试间隔（毫秒），已售罄时为 null，不需要重试
+     */
+    private Long retryAfterMillis;
+
+    public static AdmissionResultDTO admit() {
+        return new AdmissionResultDTO(true, 0L, 0L);
+    }
+
+    public static AdmissionResultDTO soldOut() {
+        return new AdmissionResultDTO(false, null, null);
+    }
+}
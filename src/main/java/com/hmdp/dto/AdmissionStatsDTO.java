@@ -0,0 +1,40 @@
+package com.hmdp.dto;
+
+import lombok.Data;
+
+/**
+ * 秒杀准入控制实时统计
+ * @author Ghost
+ * @version 1.0
+ */
+@Data
+public class AdmissionStatsDTO {
+    /**
+     * 优惠券id
+     */
+    private Long voucherId;
+    /**
+     * 最近一次采样到的剩余库存
+     */
+    private Long stock;
+    /**
+     * 当前配置的放行速率（个/秒）
+     */
+    private Integer rate;
+    /**
+     * 最近一个采样周期内实际放行速率（个/秒）
+     */
+    private Double admittedPerSecond;
+    /**
+     * 当前等待室中排队的请求数
+     */
+    private Integer waiting;
+    /**
+     * 累计放行请求数
+     */
+    private Long admitted;
+    /**
+     * 累计拒绝请求数
+     */
+    private Long rejected;
+}
@@ -0,0 +1,48 @@
+package com.hmdp.dto;
+
+import lombok.Data;
+
+/**
+ * 分布式锁竞争统计，按锁名称前缀汇总
+ * @author Ghost
+ * @version 1.0
+ */
+@Data
+public class LockStatsDTO {
+    /**
+     * 锁名称前缀，例如 lock:order
+     */
+    private String prefix;
+    /**
+     * 累计获取锁成功次数
+     */
+    private Long acquired;
+    /**
+     * 累计获取锁失败次数（被占用或等待超时）
+     */
+    private Long failed;
+    /**
+     * 获取锁失败率
+     */
+    private Double failureRate;
+    /**
+     * 获取锁的平均耗时（毫秒），包含失败的尝试
+     */
+    private Double avgAcquireMillis;
+    /**
+     * 获取锁的最长耗时（毫秒）
+     */
+    private Double maxAcquireMillis;
+    /**
+     * 平均持有锁的时长（毫秒）
+     */
+    private Double avgHoldMillis;
+    /**
+     * 最长持有锁的时长（毫秒）
+     */
+    private Double maxHoldMillis;
+    /**
+     * 释放锁时发现锁已经过期（或者被他人持有）的次数，不为 0 说明临界区可能被并发执行
+     */
+    private Long leaseExpired;
+}
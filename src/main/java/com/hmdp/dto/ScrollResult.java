@@ -9,4 +9,8 @@ public class ScrollResult {
     private List<?> list;
     private Long minTime;
     private Integer offset;
+    /**
+     * 下一页的游标，没有下一页时为 null
+     */
+    private String nextCursor;
 }
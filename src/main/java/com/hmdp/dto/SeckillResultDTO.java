@@ -0,0 +1,38 @@
+package com.hmdp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 秒杀订单异步处理结果
+ * @author Ghost
+ * @version 1.0
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SeckillResultDTO {
+    /**
+     * 处理中
+     */
+    public static final int PENDING = 0;
+    /**
+     * 订单已落库
+     */
+    public static final int SUCCESS = 1;
+    /**
+     * 下单失败
+     */
+    public static final int FAILED = 2;
+
+    private Long orderId;
+    /**
+     * 处理状态，0：处理中；1：成功；2：失败
+     */
+    private Integer status;
+    /**
+     * 失败原因
+     */
+    private String errorMsg;
+}
@@ -0,0 +1,105 @@
+package com.hmdp.interceptor;
+
+import cn.hutool.core.util.BooleanUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONUtil;
+import com.hmdp.annotation.Idempotent;
+import com.hmdp.dto.Result;
+import com.hmdp.dto.UserDTO;
+import com.hmdp.utils.UserHolder;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.utils.RedisConstants.IDEMPOTENCY_KEY;
+
+/**
+ * 幂等拦截器：对标注了 {@link Idempotent} 且携带 Idempotency-Key 请求头的请求，
+ * 第一次请求登记处理中并放行，重复请求只查询一次 Redis，直接回放第一次的响应。
+ * 幂等记录按用户隔离，未登录的请求无法区分调用方，不做幂等处理
+ * @author Ghost
+ * @version 1.0
+ */
+public class IdempotencyInterceptor implements HandlerInterceptor {
+
+    public static final String IDEMPOTENCY_HEADER = "Idempotency-Key";
+    /**
+     * 保存本次请求幂等记录 key 的请求属性
+     */
+    public static final String RECORD_KEY_ATTRIBUTE = IdempotencyInterceptor.class.getName() + ".KEY";
+    /**
+     * 标记第一次响应已经保存的请求属性
+     */
+    public static final String RECORD_SAVED_ATTRIBUTE = IdempotencyInterceptor.class.getName() + ".SAVED";
+    /**
+     * 第一次请求还没有处理完时的占位值
+     */
+    public static final String PROCESSING = "PROCESSING";
+
+    private StringRedisTemplate stringRedisTemplate;
+
+    public IdempotencyInterceptor(StringRedisTemplate stringRedisTemplate) {
+        this.stringRedisTemplate = stringRedisTemplate;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        // 1. 判断是否是需要幂等处理的请求
+        if (!(handler instanceof HandlerMethod)) {
+            return true;
+        }
+        Idempotent idempotent = ((HandlerMethod) handler).getMethodAnnotation(Idempotent.class);
+        String idempotencyKey = request.getHeader(IDEMPOTENCY_HEADER);
+        UserDTO user = UserHolder.getUser();
+        if (idempotent == null || StrUtil.isBlank(idempotencyKey) || user == null) {
+            // 未登录的请求共用同一个 key 会互相回放对方的响应，忽略请求头
+            return true;
+        }
+
+        // 2. 查询幂等记录，命中则直接回放
+        String key = recordKey(request, user.getId(), idempotencyKey);
+        String record = stringRedisTemplate.opsForValue().get(key);
+        if (record != null) {
+            writeRecord(response, record);
+            return false;
+        }
+
+        // 3. 第一次请求，登记处理中
+        Boolean isFirst = stringRedisTemplate.opsForValue()
+                .setIfAbsent(key, PROCESSING, idempotent.expireSeconds(), TimeUnit.SECONDS);
+        if (!BooleanUtil.isTrue(isFirst)) {
+            // 并发的重复请求
+            writeRecord(response, PROCESSING);
+            return false;
+        }
+        request.setAttribute(RECORD_KEY_ATTRIBUTE, key);
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) throws Exception {
+        // 没有保存成功响应（业务失败或者异常），删除处理中记录，允许客户端重试
+        String key = (String) request.getAttribute(RECORD_KEY_ATTRIBUTE);
+        if (key != null && request.getAttribute(RECORD_SAVED_ATTRIBUTE) == null) {
+            stringRedisTemplate.delete(key);
+        }
+    }
+
+    private String recordKey(HttpServletRequest request, Long userId, String idempotencyKey) {
+        // 按用户、接口隔离，同一个 key 用在不同接口上互不影响
+        return IDEMPOTENCY_KEY + userId + ":" + request.getMethod() + ":" + request.getRequestURI() + ":" + idempotencyKey;
+    }
+
+    private void writeRecord(HttpServletResponse response, String record) throws IOException {
+        String body = PROCESSING.equals(record)
+                ? JSONUtil.toJsonStr(Result.fail("请求正在处理中，请勿重复提交！"))
+                : record;
+        response.setContentType("application/json;charset=UTF-8");
+        response.getWriter().write(body);
+    }
+}
@@ -1,32 +1,69 @@
 package com.hmdp.interceptor;
 
-import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
 import cn.hutool.core.util.StrUtil;
 import com.hmdp.dto.UserDTO;
+import com.hmdp.utils.LoginTokenManager;
+import com.hmdp.utils.UserDTOMapper;
 import com.hmdp.utils.UserHolder;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.data.redis.core.StringRedisTemplate;
-import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
 import org.springframework.web.servlet.ModelAndView;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.util.Map;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import static com.hmdp.utils.RedisConstants.LOGIN_USER_KEY;
+import static com.hmdp.utils.RedisConstants.LOGIN_USER_REFRESH_TTL;
 import static com.hmdp.utils.RedisConstants.LOGIN_USER_TTL;
 
 /**
- * 全局请求拦截器：拦截所有请求以更新 token
+ * 全局请求拦截器：拦截所有请求以更新 token。
+ * 签名 token 在本地校验签名和有效期，不访问 Redis；
+ * 普通 token 校验过后在本地缓存一小段时间，缓存未命中时通过一次 Lua 调用读取用户信息，
+ * 并且只在剩余有效期低于阈值时续期
  * @author Ghost
  * @version 1.0
  */
-public class RefreshTokenInterceptor implements HandlerInterceptor {
+public class RefreshTokenInterceptor implements AsyncHandlerInterceptor {
+
+    /**
+     * 本地缓存的 token 数量上限
+     */
+    private static final int TOKEN_CACHE_CAPACITY = 10000;
+    /**
+     * 本地缓存的有效期，token 在 Redis 中被删除后最多在这段时间内仍然有效
+     */
+    private static final long TOKEN_CACHE_TTL_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private static final DefaultRedisScript<List> TOKEN_TOUCH_SCRIPT;
+
+    /**
+     * 初始化 Lua 脚本
+     */
+    static {
+        TOKEN_TOUCH_SCRIPT = new DefaultRedisScript<>();
+        TOKEN_TOUCH_SCRIPT.setLocation(new ClassPathResource("token_touch.lua"));
+        TOKEN_TOUCH_SCRIPT.setResultType(List.class);
+    }
 
     private StringRedisTemplate stringRedisTemplate;
+    private LoginTokenManager loginTokenManager;
+
+    /**
+     * 本地 token 缓存：token -> 用户信息
+     */
+    private final LRUCache<String, UserDTO> tokenCache = CacheUtil.newLRUCache(TOKEN_CACHE_CAPACITY, TOKEN_CACHE_TTL_MILLIS);
 
-    public RefreshTokenInterceptor(StringRedisTemplate stringRedisTemplate) {
+    public RefreshTokenInterceptor(StringRedisTemplate stringRedisTemplate, LoginTokenManager loginTokenManager) {
         this.stringRedisTemplate = stringRedisTemplate;
+        this.loginTokenManager = loginTokenManager;
     }
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
@@ -35,30 +72,66 @@ public class RefreshTokenInterceptor implements HandlerInterceptor {
         if(StrUtil.isBlank(token)) {
             return true;
         }
-        // 2. 根据 token 查询 Redis 获取用户信息
-        String key = LOGIN_USER_KEY + token;
-        Map<Object, Object> userMap = stringRedisTemplate.opsForHash().entries(key);
-        // 3. 判断用户是否存在
-        if(userMap.isEmpty()) {
+        // 2. 签名 token 在本地校验
+        if (loginTokenManager.isSignedToken(token)) {
+            UserDTO userDTO = loginTokenManager.parseSignedToken(token);
+            if (userDTO != null) {
+                UserHolder.saveUser(userDTO);
+            }
             return true;
         }
+        // 3. 已经注销的 token
+        if (loginTokenManager.isRevoked(token)) {
+            tokenCache.remove(token);
+            return true;
+        }
+        // 4. 查询本地缓存，命中则不访问 Redis（不刷新本地缓存的有效期，保证定期回源校验）
+        UserDTO userDTO = tokenCache.get(token, false);
+        if (userDTO == null) {
+            // 4.1 根据 token 查询 Redis 获取用户信息，剩余有效期低于阈值时续期
+            userDTO = loadUser(token);
+            // 4.2 判断用户是否存在
+            if (userDTO == null) {
+                return true;
+            }
+            tokenCache.put(token, userDTO);
+        }
 
-        // 5. 将查询到的 map 数据转为 UserDTO
-        UserDTO userDTO = BeanUtil.fillBeanWithMap(userMap, new UserDTO(), false);
-
-        // 6. 使用工具将用户信息保存到 ThreadLocal 中
+        // 5. 使用工具将用户信息保存到 ThreadLocal 中
         UserHolder.saveUser(userDTO);
 
-        // 7. 更新 token 有效期
-        stringRedisTemplate.expire(key, LOGIN_USER_TTL, TimeUnit.MINUTES);
-
-        // 8. 放行
+        // 6. 放行
         return true;
     }
 
+    /**
+     * 通过 Lua 脚本读取 token 对应的用户信息并按需续期
+     * @param token
+     * @return 用户信息，token 不存在时返回 null
+     */
+    @SuppressWarnings("unchecked")
+    private UserDTO loadUser(String token) {
+        List<String> fields = stringRedisTemplate.execute(
+                TOKEN_TOUCH_SCRIPT,
+                Collections.singletonList(LOGIN_USER_KEY + token),
+                String.valueOf(TimeUnit.MINUTES.toSeconds(LOGIN_USER_TTL)),
+                String.valueOf(TimeUnit.MINUTES.toSeconds(LOGIN_USER_REFRESH_TTL)));
+        if (fields == null || fields.isEmpty()) {
+            return null;
+        }
+        // 将 HGETALL 返回的 field、value 交替列表直接转为 UserDTO
+        return UserDTOMapper.fromHashFields(fields);
+    }
+
     @Override
     public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler, ModelAndView modelAndView) throws Exception {
         // 移除用户
         UserHolder.removeUser();
     }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        // 异步请求（长轮询）不会执行 postHandle，请求线程释放前移除用户
+        UserHolder.removeUser();
+    }
 }
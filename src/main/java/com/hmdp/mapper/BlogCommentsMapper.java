@@ -2,6 +2,9 @@ package com.hmdp.mapper;
 
 import com.hmdp.entity.BlogComments;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
 
 /**
  * <p>
@@ -13,4 +16,13 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
  */
 public interface BlogCommentsMapper extends BaseMapper<BlogComments> {
 
+    /**
+     * 一条语句查询多条一级评论各自最早的几条回复，每个子查询都走 (parent_id, id) 索引
+     * @param parentIds 一级评论id
+     * @param limit 每条一级评论的回复数
+     * @param hiddenStatus 禁止查看的状态，不返回
+     * @return 回复，按一级评论、id 排序
+     */
+    List<BlogComments> listReplyPreviews(@Param("parentIds") List<Long> parentIds, @Param("limit") int limit,
+                                         @Param("hiddenStatus") int hiddenStatus);
 }
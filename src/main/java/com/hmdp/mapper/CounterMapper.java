@@ -0,0 +1,35 @@
+package com.hmdp.mapper;
+
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 计数字段的批量写回，表名、列名来自 {@link com.hmdp.utils.Counter}，不接受外部输入
+ * @author Ghost
+ * @version 1.0
+ */
+public interface CounterMapper {
+
+    /**
+     * 一条语句批量累加计数，结果小于 0 时置为 0（计数字段是无符号的）
+     * @param table 表名
+     * @param idColumn 主键列名
+     * @param column 计数列名
+     * @param deltas 主键 -> 增量
+     * @return 更新的行数
+     */
+    int addBatch(@Param("table") String table, @Param("idColumn") String idColumn,
+                 @Param("column") String column, @Param("deltas") Map<Long, Long> deltas);
+
+    /**
+     * 批量创建不存在的记录
+     * @param table 表名
+     * @param idColumn 主键列名
+     * @param ids 主键
+     * @return 插入的行数
+     */
+    int insertIgnore(@Param("table") String table, @Param("idColumn") String idColumn,
+                     @Param("ids") Collection<Long> ids);
+}
@@ -2,6 +2,7 @@ package com.hmdp.mapper;
 
 import com.hmdp.entity.UserInfo;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
 
 /**
  * <p>
@@ -13,4 +14,10 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
  */
 public interface UserInfoMapper extends BaseMapper<UserInfo> {
 
+    /**
+     * 用户第一次修改详情时创建详情记录（主键是用户id，不能使用自增插入）
+     * @param userId 用户id
+     * @return 插入的行数，已经存在时为 0
+     */
+    int insertIfAbsent(@Param("userId") Long userId);
 }
@@ -1,5 +1,6 @@
 package com.hmdp.service;
 
+import com.hmdp.dto.Result;
 import com.hmdp.entity.BlogComments;
 import com.baomidou.mybatisplus.extension.service.IService;
 
@@ -13,4 +14,26 @@ import com.baomidou.mybatisplus.extension.service.IService;
  */
 public interface IBlogCommentsService extends IService<BlogComments> {
 
+    /**
+     * 发表评论或回复
+     * @param comment 博客id、内容，回复时再带上回复的评论id
+     * @return 评论id
+     */
+    Result saveComment(BlogComments comment);
+
+    /**
+     * 按 id 倒序滚动查询博客的一级评论，每条附带最早的几条回复
+     * @param blogId 博客id
+     * @param lastId 上一页最后一条评论的id，第一页不传
+     * @return 评论列表
+     */
+    Result queryComments(Long blogId, Long lastId);
+
+    /**
+     * 按 id 正序滚动查询一级评论的回复
+     * @param parentId 一级评论id
+     * @param lastId 上一页最后一条回复的id，第一页不传
+     * @return 回复列表
+     */
+    Result queryReplies(Long parentId, Long lastId);
 }
@@ -1,5 +1,6 @@
 package com.hmdp.service;
 
+import com.hmdp.dto.Result;
 import com.hmdp.entity.Blog;
 import com.baomidou.mybatisplus.extension.service.IService;
 
@@ -13,4 +14,53 @@ import com.baomidou.mybatisplus.extension.service.IService;
  */
 public interface IBlogService extends IService<Blog> {
 
+    /**
+     * 发布博客，并加入热门博客排行榜
+     * @param blog 博客
+     * @return 博客id
+     */
+    Result saveBlog(Blog blog);
+
+    /**
+     * 查询博客详情，附带作者昵称、头像和当前用户是否点赞
+     * @param id 博客id
+     * @return 博客详情
+     */
+    Result queryBlogById(Long id);
+
+    /**
+     * 修改博客，只有作者可以修改
+     * @param blog 博客id和要修改的字段
+     * @return
+     */
+    Result updateBlog(Blog blog);
+
+    /**
+     * 分页查询热门博客（按随时间衰减的热度倒序），附带作者昵称、头像
+     * @param current 页码
+     * @return 博客列表
+     */
+    Result queryHotBlog(Integer current);
+
+    /**
+     * 滚动查询热门博客，附带作者昵称、头像
+     * @param cursor 上一页返回的游标，第一页不传
+     * @return 博客列表和下一页的游标
+     */
+    Result queryHotBlogOfScroll(String cursor);
+
+    /**
+     * 滚动分页查询关注的人发布的博客
+     * @param max 上一页最后一条的发布时间，第一页传当前时间
+     * @param offset 上一页中发布时间等于 max 的条数
+     * @return 博客列表和下一页的 max、offset
+     */
+    Result queryBlogOfFollow(Long max, Integer offset);
+
+    /**
+     * 点赞或取消点赞（再次点赞即取消）
+     * @param id 博客id
+     * @return 点赞后的状态，true 代表已点赞
+     */
+    Result likeBlog(Long id);
 }
@@ -1,8 +1,11 @@
 package com.hmdp.service;
 
+import com.hmdp.dto.Result;
 import com.hmdp.entity.Follow;
 import com.baomidou.mybatisplus.extension.service.IService;
 
+import java.util.List;
+
 /**
  * <p>
  *  服务类
@@ -13,4 +16,33 @@ import com.baomidou.mybatisplus.extension.service.IService;
  */
 public interface IFollowService extends IService<Follow> {
 
+    /**
+     * 关注或取关
+     * @param followUserId 被关注的用户id
+     * @param isFollow true 代表关注，false 代表取关
+     * @return
+     */
+    Result follow(Long followUserId, Boolean isFollow);
+
+    /**
+     * 当前登录用户是否关注了该用户
+     * @param followUserId 被关注的用户id
+     * @return true 代表已关注
+     */
+    Result isFollow(Long followUserId);
+
+    /**
+     * 当前登录用户与该用户的共同关注
+     * @param userId 用户id
+     * @return 共同关注的用户基本信息
+     */
+    Result followCommons(Long userId);
+
+    /**
+     * 用户关注的人与 Redis 中另一个用户id集合的交集
+     * @param userId 用户id
+     * @param setKey 用户id集合的 key
+     * @return 交集中的用户id
+     */
+    List<Long> intersectFollowees(Long userId, String setKey);
 }
@@ -1,5 +1,6 @@
 package com.hmdp.service;
 
+import com.hmdp.dto.Result;
 import com.hmdp.entity.UserInfo;
 import com.baomidou.mybatisplus.extension.service.IService;
 
@@ -13,4 +14,17 @@ import com.baomidou.mybatisplus.extension.service.IService;
  */
 public interface IUserInfoService extends IService<UserInfo> {
 
+    /**
+     * 查询用户详情，优先查询缓存
+     * @param userId 用户id
+     * @return 没有详情时返回 null
+     */
+    UserInfo getUserInfo(Long userId);
+
+    /**
+     * 修改当前登录用户的详情，并删除缓存
+     * @param userInfo 用户详情
+     * @return
+     */
+    Result updateUserInfo(UserInfo userInfo);
 }
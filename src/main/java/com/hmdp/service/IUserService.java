@@ -3,9 +3,12 @@ package com.hmdp.service;
 import com.baomidou.mybatisplus.extension.service.IService;
 import com.hmdp.dto.LoginFormDTO;
 import com.hmdp.dto.Result;
+import com.hmdp.dto.UserDTO;
 import com.hmdp.entity.User;
 
 import javax.servlet.http.HttpSession;
+import java.util.Collection;
+import java.util.Map;
 
 /**
  * <p>
@@ -31,4 +34,32 @@ public interface IUserService extends IService<User> {
      * @return
      */
     Result login(LoginFormDTO loginForm, HttpSession session);
+
+    /**
+     * 登出功能
+     * @param token 登录凭证
+     * @return
+     */
+    Result logout(String token);
+
+    /**
+     * 查询用户基本信息（昵称、头像），优先查询缓存
+     * @param id 用户id
+     * @return 用户不存在时返回 null
+     */
+    UserDTO getUser(Long id);
+
+    /**
+     * 批量查询用户基本信息，一次 MGET 查询缓存，未命中的一次性查询数据库
+     * @param ids 用户id
+     * @return 用户id -> 用户基本信息，不存在的用户不返回
+     */
+    Map<Long, UserDTO> getUsers(Collection<Long> ids);
+
+    /**
+     * 修改当前登录用户的昵称、头像，并删除缓存
+     * @param profile 新的昵称、头像
+     * @return
+     */
+    Result updateProfile(UserDTO profile);
 }
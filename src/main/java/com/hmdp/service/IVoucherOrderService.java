@@ -3,6 +3,9 @@ package com.hmdp.service;
 import com.hmdp.dto.Result;
 import com.hmdp.entity.VoucherOrder;
 import com.baomidou.mybatisplus.extension.service.IService;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.List;
 
 /**
  * <p>
@@ -23,8 +26,23 @@ public interface IVoucherOrderService extends IService<VoucherOrder> {
 
     /**
      * 生成优惠券订单
-     * @param voucherId
+     * @param voucherOrder 已通过秒杀资格校验的订单
      * @return
      */
-    Result createVoucherOrder(Long voucherId);
+    Result createVoucherOrder(VoucherOrder voucherOrder);
+
+    /**
+     * 查询秒杀订单处理结果
+     * @param orderId 订单id
+     * @param timeout 订单仍在处理中时最多挂起的毫秒数，0 表示立即返回
+     * @return
+     */
+    DeferredResult<Result> queryOrderResult(Long orderId, Long timeout);
+
+    /**
+     * 批量取消超时未支付的订单，并归还数据库中的库存
+     * @param orderIds 到期的订单id
+     * @return 实际被取消的订单（已支付的订单不会被取消）
+     */
+    List<VoucherOrder> cancelUnpaidOrders(List<Long> orderIds);
 }
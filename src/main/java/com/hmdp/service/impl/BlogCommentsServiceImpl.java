@@ -1,20 +1,194 @@
 package com.hmdp.service.impl;
 
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONUtil;
+import com.hmdp.dto.Result;
+import com.hmdp.dto.UserDTO;
 import com.hmdp.entity.BlogComments;
 import com.hmdp.mapper.BlogCommentsMapper;
 import com.hmdp.service.IBlogCommentsService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmdp.service.IBlogService;
+import com.hmdp.service.IUserService;
+import com.hmdp.utils.BlogHotRanking;
+import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.Counter;
+import com.hmdp.utils.CounterService;
+import com.hmdp.utils.UserHolder;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.hmdp.utils.RedisConstants.CACHE_BLOG_COMMENTS_KEY;
+import static com.hmdp.utils.RedisConstants.CACHE_BLOG_COMMENTS_TTL;
+import static com.hmdp.utils.RedisConstants.CACHE_BLOG_COMMENTS_VERSION_KEY;
+import static com.hmdp.utils.SystemConstants.*;
+
 /**
- * <p>
- *  服务实现类
- * </p>
- *
- * @author 虎哥
- * @since 2021-12-22
+ * 博客评论相关接口：评论按 id 游标分页（不使用 OFFSET），一页评论的回复预览一条语句批量查询，
+ * 博客的评论数交给计数服务累计，第一页评论整体缓存
+ * @author Ghost
+ * @version 1.0
  */
 @Service
 public class BlogCommentsServiceImpl extends ServiceImpl<BlogCommentsMapper, BlogComments> implements IBlogCommentsService {
 
+    @Resource
+    private IBlogService blogService;
+
+    @Resource
+    private IUserService userService;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private CounterService counterService;
+
+    @Resource
+    private BlogHotRanking blogHotRanking;
+
+    @Resource
+    private CacheClient cacheClient;
+
+    /**
+     * 发表评论或回复：回复挂在被回复评论所属的一级评论下
+     * @param comment 博客id、内容，回复时再带上回复的评论id
+     * @return 评论id
+     */
+    public Result saveComment(BlogComments comment) {
+        if (StrUtil.isBlank(comment.getContent()) || comment.getContent().length() > 255) {
+            return Result.fail("评论内容不能为空，且不能超过255个字符！");
+        }
+        // 1. 确定所属的一级评论
+        long parentId = 0L;
+        long answerId = 0L;
+        if (comment.getAnswerId() != null && comment.getAnswerId() > 0) {
+            BlogComments answer = getById(comment.getAnswerId());
+            if (answer == null || !answer.getBlogId().equals(comment.getBlogId())) {
+                return Result.fail("回复的评论不存在！");
+            }
+            answerId = answer.getId();
+            parentId = answer.getParentId() == 0 ? answer.getId() : answer.getParentId();
+        } else if (comment.getBlogId() == null || blogService.getById(comment.getBlogId()) == null) {
+            return Result.fail("博客不存在！");
+        }
+
+        // 2. 保存评论
+        BlogComments saved = new BlogComments()
+                .setUserId(UserHolder.getUser().getId())
+                .setBlogId(comment.getBlogId())
+                .setParentId(parentId)
+                .setAnswerId(answerId)
+                .setContent(comment.getContent())
+                .setLiked(0)
+                .setStatus(false);
+        save(saved);
+
+        // 3. 累计评论数、热度，删除第一页缓存并把版本号加一，正在查询第一页的请求不会写回没有这条评论的结果
+        counterService.increment(Counter.BLOG_COMMENTS, saved.getBlogId(), 1);
+        blogHotRanking.onComment(saved.getBlogId(), 1);
+        cacheClient.invalidate(CACHE_BLOG_COMMENTS_KEY + saved.getBlogId(),
+                CACHE_BLOG_COMMENTS_VERSION_KEY + saved.getBlogId());
+        return Result.ok(saved.getId());
+    }
+
+    /**
+     * 按 id 倒序滚动查询博客的一级评论，每条附带最早的几条回复；第一页整体缓存，
+     * 查询数据库期间有新评论（缓存版本号变化）时不写回
+     * @param blogId 博客id
+     * @param lastId 上一页最后一条评论的id，第一页不传
+     * @return 评论列表
+     */
+    public Result queryComments(Long blogId, Long lastId) {
+        boolean firstPage = lastId == null;
+        String key = CACHE_BLOG_COMMENTS_KEY + blogId;
+        String versionKey = CACHE_BLOG_COMMENTS_VERSION_KEY + blogId;
+        // 1. 第一页先查询缓存，同时查到版本号
+        String version = null;
+        if (firstPage) {
+            List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                conn.get(key);
+                conn.get(versionKey);
+                return null;
+            });
+            String json = (String) results.get(0);
+            if (json != null) {
+                return Result.ok(JSONUtil.toList(json, BlogComments.class));
+            }
+            version = (String) results.get(1);
+        }
+
+        // 2. 一级评论：走 (blog_id, parent_id, id) 索引，从游标位置开始取一页
+        List<BlogComments> comments = query()
+                .eq("blog_id", blogId).eq("parent_id", 0)
+                .lt(!firstPage, "id", lastId)
+                .and(wrapper -> wrapper.isNull("status").or().ne("status", COMMENT_STATUS_HIDDEN))
+                .orderByDesc("id").last("LIMIT " + MAX_PAGE_SIZE).list();
+
+        // 3. 回复预览：一条语句批量查询这一页所有评论的回复
+        List<BlogComments> replies = comments.isEmpty() ? Collections.emptyList() : getBaseMapper()
+                .listReplyPreviews(comments.stream().map(BlogComments::getId).collect(Collectors.toList()),
+                        COMMENT_REPLY_PREVIEW_SIZE, COMMENT_STATUS_HIDDEN);
+        Map<Long, List<BlogComments>> repliesByParent = replies.stream()
+                .collect(Collectors.groupingBy(BlogComments::getParentId));
+        comments.forEach(comment ->
+                comment.setReplies(repliesByParent.getOrDefault(comment.getId(), Collections.emptyList())));
+
+        // 4. 批量查询作者
+        List<BlogComments> all = new ArrayList<>(comments);
+        all.addAll(replies);
+        fillAuthors(all);
+
+        // 5. 缓存第一页，版本号没有变化时才写入
+        if (firstPage) {
+            cacheClient.setIfVersion(key, versionKey, version,
+                    comments, CACHE_BLOG_COMMENTS_TTL, TimeUnit.MINUTES, false);
+        }
+        return Result.ok(comments);
+    }
+
+    /**
+     * 按 id 正序滚动查询一级评论的回复
+     * @param parentId 一级评论id
+     * @param lastId 上一页最后一条回复的id，第一页不传
+     * @return 回复列表
+     */
+    public Result queryReplies(Long parentId, Long lastId) {
+        List<BlogComments> replies = query()
+                .eq("parent_id", parentId)
+                .gt(lastId != null, "id", lastId)
+                .and(wrapper -> wrapper.isNull("status").or().ne("status", COMMENT_STATUS_HIDDEN))
+                .orderByAsc("id").last("LIMIT " + MAX_PAGE_SIZE).list();
+        fillAuthors(replies);
+        return Result.ok(replies);
+    }
+
+    /**
+     * 批量查询作者，填充昵称和头像
+     */
+    private void fillAuthors(List<BlogComments> comments) {
+        if (comments.isEmpty()) {
+            return;
+        }
+        Map<Long, UserDTO> users = userService.getUsers(
+                comments.stream().map(BlogComments::getUserId).distinct().collect(Collectors.toList()));
+        comments.forEach(comment -> {
+            UserDTO user = users.get(comment.getUserId());
+            if (user != null) {
+                comment.setName(user.getNickName());
+                comment.setIcon(user.getIcon());
+            }
+        });
+    }
 }
@@ -1,11 +1,52 @@
 package com.hmdp.service.impl;
 
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONUtil;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.hmdp.dto.Result;
+import com.hmdp.dto.ScrollResult;
+import com.hmdp.dto.UserDTO;
 import com.hmdp.entity.Blog;
+import com.hmdp.entity.Follow;
 import com.hmdp.mapper.BlogMapper;
 import com.hmdp.service.IBlogService;
+import com.hmdp.service.IFollowService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmdp.service.IUserService;
+import com.hmdp.utils.BlogHotRanking;
+import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.Counter;
+import com.hmdp.utils.CounterService;
+import com.hmdp.utils.CursorUtils;
+import com.hmdp.utils.FollowGraph;
+import com.hmdp.utils.UserHolder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.hmdp.utils.RedisConstants.*;
+import static com.hmdp.utils.SystemConstants.*;
+
 /**
  * <p>
  *  服务实现类
@@ -14,7 +55,498 @@ import org.springframework.stereotype.Service;
  * @author 虎哥
  * @since 2021-12-22
  */
+@Slf4j
 @Service
 public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IBlogService {
 
+    @Resource
+    private IUserService userService;
+
+    @Resource
+    private IFollowService followService;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private BlogHotRanking blogHotRanking;
+
+    @Resource
+    private FollowGraph followGraph;
+
+    @Resource
+    private CounterService counterService;
+
+    @Resource
+    private CacheClient cacheClient;
+
+    private static final DefaultRedisScript<Long> LIKE_SCRIPT;
+
+    /**
+     * 初始化 Lua 脚本
+     */
+    static {
+        LIKE_SCRIPT = new DefaultRedisScript<>();
+        LIKE_SCRIPT.setLocation(new ClassPathResource("blog_like.lua"));
+        LIKE_SCRIPT.setResultType(Long.class);
+    }
+
+    /**
+     * 博客详情缓存的异步刷新线程
+     */
+    private static final ExecutorService BLOG_CACHE_REFRESH_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    /**
+     * 点赞数、评论数写回数据库后异步刷新博客详情缓存
+     */
+    @PostConstruct
+    private void init() {
+        counterService.addFlushListener(Counter.BLOG_LIKED, this::refreshBlogCacheAsync);
+        counterService.addFlushListener(Counter.BLOG_COMMENTS, this::refreshBlogCacheAsync);
+    }
+
+    /**
+     * 发布博客，并加入热门博客排行榜
+     * @param blog 博客
+     * @return 博客id
+     */
+    public Result saveBlog(Blog blog) {
+        // 获取登录用户
+        UserDTO user = UserHolder.getUser();
+        blog.setUserId(user.getId());
+        // 保存探店博文
+        save(blog);
+        // 加入排行榜
+        blogHotRanking.onPublish(blog.getId());
+        // 推送给粉丝
+        pushToFollowers(blog);
+        // 返回id
+        return Result.ok(blog.getId());
+    }
+
+    /**
+     * 查询博客详情：博客和作者作为一个整体缓存，当前用户是否点赞单独查询，与缓存在同一个管道中完成；
+     * 未命中时同时查到缓存版本号，查询数据库期间博客被修改时不写回
+     * @param id 博客id
+     * @return 博客详情
+     */
+    public Result queryBlogById(Long id) {
+        UserDTO user = UserHolder.getUser();
+        String key = CACHE_BLOG_KEY + id;
+        String versionKey = CACHE_BLOG_VERSION_KEY + id;
+        // 1. 一次往返查询缓存、版本号和点赞状态
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            conn.get(key);
+            conn.get(versionKey);
+            if (user != null) {
+                conn.zScore(BLOG_LIKED_KEY + id, user.getId().toString());
+            }
+            return null;
+        });
+        String json = (String) results.get(0);
+
+        // 2. 未命中，查询博客和作者并写入缓存
+        Blog blog;
+        if (json == null) {
+            blog = loadBlog(id, (String) results.get(1));
+        } else {
+            blog = json.isEmpty() ? null : JSONUtil.toBean(json, Blog.class);
+        }
+        if (blog == null) {
+            return Result.fail("博客不存在！");
+        }
+
+        // 3. 填充当前用户是否点赞
+        blog.setIsLike(user != null && results.size() > 2 && results.get(2) != null);
+        return Result.ok(blog);
+    }
+
+    /**
+     * 博客详情缓存未命中时查询博客和作者并写入缓存，版本号没有变化时才写入；不存在的博客缓存空值
+     * @param id 博客id
+     * @param version 查询缓存时查到的版本号
+     * @return 博客，不存在时返回 null
+     */
+    private Blog loadBlog(Long id, String version) {
+        String key = CACHE_BLOG_KEY + id;
+        Blog blog = getById(id);
+        if (blog == null) {
+            stringRedisTemplate.opsForValue().set(key, "", CACHE_NULL_TTL, TimeUnit.MINUTES);
+            return null;
+        }
+        fillAuthors(Collections.singletonList(blog));
+        cacheClient.setIfVersion(key, CACHE_BLOG_VERSION_KEY + id, version,
+                blog, CACHE_BLOG_TTL, TimeUnit.MINUTES, false);
+        return blog;
+    }
+
+    /**
+     * 修改博客：只有作者可以修改，修改后删除详情缓存
+     * @param blog 博客id和要修改的标题、内容、图片、商户
+     * @return
+     */
+    public Result updateBlog(Blog blog) {
+        Long userId = UserHolder.getUser().getId();
+        if (blog.getId() == null) {
+            return Result.fail("博客id不能为空！");
+        }
+        // 1. 只更新可以修改的字段，带上作者条件，不是作者时不会更新
+        boolean updated = update()
+                .set(blog.getTitle() != null, "title", blog.getTitle())
+                .set(blog.getContent() != null, "content", blog.getContent())
+                .set(blog.getImages() != null, "images", blog.getImages())
+                .set(blog.getShopId() != null, "shop_id", blog.getShopId())
+                .eq("id", blog.getId()).eq("user_id", userId)
+                .update();
+        if (!updated) {
+            return Result.fail("博客不存在或不是作者！");
+        }
+        // 2. 删除缓存，版本号加一，正在进行的查询、刷新不会写回修改前的博客
+        cacheClient.invalidate(CACHE_BLOG_KEY + blog.getId(), CACHE_BLOG_VERSION_KEY + blog.getId());
+        return Result.ok();
+    }
+
+    /**
+     * 分页查询热门博客：整页结果缓存几秒，未命中时从排行榜取出一页博客id，再批量查询博客和作者；
+     * 排行榜还没有初始化时退化为按点赞数查询数据库
+     * @param current 页码，小于 1 时按第一页查询
+     * @return 博客列表
+     */
+    public Result queryHotBlog(Integer current) {
+        // 页码小于 1 时按第一页查询，避免负数下标从排行榜末尾取数据
+        current = current == null || current < 1 ? 1 : current;
+        String key = CACHE_BLOG_HOT_KEY + current;
+        // 1. 查询缓存的整页结果
+        String json = stringRedisTemplate.opsForValue().get(key);
+        if (StrUtil.isNotBlank(json)) {
+            List<Blog> blogs = JSONUtil.toList(json, Blog.class);
+            fillIsLike(blogs);
+            return Result.ok(blogs);
+        }
+
+        // 2. 从排行榜取出当前页的博客
+        List<Blog> records = queryHotRecords(current);
+
+        // 3. 批量查询作者
+        fillAuthors(records);
+
+        // 4. 缓存整页结果，再填充当前用户是否点赞
+        stringRedisTemplate.opsForValue().set(key, JSONUtil.toJsonStr(records), CACHE_BLOG_HOT_TTL, TimeUnit.SECONDS);
+        fillIsLike(records);
+        return Result.ok(records);
+    }
+
+    /**
+     * 滚动查询热门博客：第一页优先从排行榜查询，排行榜还没有初始化时按 (liked, id) 倒序走索引查询数据库；
+     * 游标的第一个值记录查询方式，之后的页沿用第一页的方式：
+     * 排行榜游标是 [HOT_CURSOR_RANKING, 下一页的起始排名]（排行榜最多保留 1000 条），
+     * 数据库游标是 [HOT_CURSOR_DB, 上一页最后一条的点赞数, 上一页最后一条的id]
+     * @param cursor 上一页返回的游标，第一页不传
+     * @return 博客列表和下一页的游标
+     */
+    public Result queryHotBlogOfScroll(String cursor) {
+        long[] last = CursorUtils.decode(cursor);
+        boolean ranking = last != null && last.length == 2 && last[0] == HOT_CURSOR_RANKING;
+        boolean db = last != null && last.length == 3 && last[0] == HOT_CURSOR_DB;
+        if (last == null || last.length > 0 && !ranking && !db) {
+            return Result.fail("无效的游标！");
+        }
+        ScrollResult scroll = null;
+        // 1. 第一页或者排行榜游标，从排行榜取出一页，多取一条用于判断是否还有下一页
+        if (!db) {
+            long offset = ranking ? last[1] : 0;
+            List<Long> ids = blogHotRanking.range(offset, MAX_PAGE_SIZE + 1);
+            if (ids == null && ranking) {
+                // 排行榜在翻页过程中被重置，从数据库的第一页重新开始会返回重复的博客，让客户端刷新
+                return Result.fail("热门榜单已更新，请刷新后重试！");
+            }
+            if (ids != null) {
+                scroll = new ScrollResult();
+                if (ids.size() > MAX_PAGE_SIZE) {
+                    ids = ids.subList(0, MAX_PAGE_SIZE);
+                    scroll.setNextCursor(CursorUtils.encode(HOT_CURSOR_RANKING, offset + MAX_PAGE_SIZE));
+                }
+                List<Long> page = ids;
+                List<Blog> records = page.isEmpty() ? new ArrayList<>() : listByIds(page);
+                records.sort(Comparator.comparingInt(blog -> page.indexOf(blog.getId())));
+                scroll.setList(records);
+            }
+        }
+        // 2. 数据库游标或者排行榜还没有初始化，按点赞数倒序从游标位置开始查询数据库（liked 非空，不会漏掉记录）
+        if (scroll == null) {
+            List<Blog> records = query()
+                    .le(db, "liked", db ? last[1] : null)
+                    .and(db, wrapper -> wrapper.lt("liked", last[1]).or().lt("id", last[2]))
+                    .orderByDesc("liked", "id").last("LIMIT " + (MAX_PAGE_SIZE + 1)).list();
+            scroll = CursorUtils.toScrollResult(records, MAX_PAGE_SIZE,
+                    blog -> new long[]{HOT_CURSOR_DB, blog.getLiked(), blog.getId()});
+        }
+
+        // 3. 批量查询作者，填充当前用户是否点赞
+        @SuppressWarnings("unchecked")
+        List<Blog> records = (List<Blog>) scroll.getList();
+        fillAuthors(records);
+        fillIsLike(records);
+        return Result.ok(scroll);
+    }
+
+    /**
+     * 滚动分页查询关注的人发布的博客：合并自己的收件箱和关注的大V的发件箱，按发布时间倒序
+     * @param max 上一页最后一条的发布时间，第一页传当前时间
+     * @param offset 上一页中发布时间等于 max 的条数，用于跳过时间相同、已经返回过的博客
+     * @return 博客列表和下一页的 max、offset
+     */
+    public Result queryBlogOfFollow(Long max, Integer offset) {
+        Long userId = UserHolder.getUser().getId();
+        // 1. 收件箱和关注的大V的发件箱
+        List<String> keys = new ArrayList<>();
+        keys.add(FEED_KEY + userId);
+        followService.intersectFollowees(userId, FEED_BIG_V_KEY).forEach(authorId -> keys.add(FEED_OUTBOX_KEY + authorId));
+
+        // 2. 每个来源都取前 offset + DEFAULT_PAGE_SIZE 条，合并后再跳过 offset 条，时间相同时按博客id倒序保证顺序稳定
+        int limit = offset + DEFAULT_PAGE_SIZE;
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            for (String key : keys) {
+                conn.zRevRangeByScoreWithScores(key, 0, max, 0, limit);
+            }
+            return null;
+        });
+        Map<Long, Long> merged = new LinkedHashMap<>();
+        for (Object result : results) {
+            @SuppressWarnings("unchecked")
+            Set<ZSetOperations.TypedTuple<String>> tuples = (Set<ZSetOperations.TypedTuple<String>>) result;
+            for (ZSetOperations.TypedTuple<String> tuple : tuples) {
+                merged.put(Long.valueOf(tuple.getValue()), tuple.getScore().longValue());
+            }
+        }
+        List<Map.Entry<Long, Long>> entries = new ArrayList<>(merged.entrySet());
+        entries.sort(Map.Entry.<Long, Long>comparingByValue().thenComparing(Map.Entry.comparingByKey()).reversed());
+        List<Map.Entry<Long, Long>> pageEntries = entries.subList(Math.min(offset, entries.size()), Math.min(limit, entries.size()));
+
+        ScrollResult scroll = new ScrollResult();
+        if (pageEntries.isEmpty()) {
+            scroll.setList(Collections.emptyList());
+            scroll.setMinTime(max);
+            scroll.setOffset(offset);
+            return Result.ok(scroll);
+        }
+
+        // 3. 计算下一页的 max 和 offset：本页最小时间，以及本页中等于该时间的条数
+        long minTime = pageEntries.get(pageEntries.size() - 1).getValue();
+        int nextOffset = 0;
+        for (Map.Entry<Long, Long> entry : pageEntries) {
+            if (entry.getValue() == minTime) {
+                nextOffset++;
+            }
+        }
+        if (minTime == max) {
+            // 整页时间都与上一页最后一条相同，需要累加
+            nextOffset += offset;
+        }
+
+        // 4. 查询博客，按收件箱中的顺序返回，已删除的博客跳过
+        List<Long> ids = pageEntries.stream().map(Map.Entry::getKey).collect(Collectors.toList());
+        List<Blog> blogs = listByIds(ids);
+        blogs.sort(Comparator.comparingInt(blog -> ids.indexOf(blog.getId())));
+        fillAuthors(blogs);
+        fillIsLike(blogs);
+
+        scroll.setList(blogs);
+        scroll.setMinTime(minTime);
+        scroll.setOffset(nextOffset);
+        return Result.ok(scroll);
+    }
+
+    /**
+     * 推送博客：粉丝不多时写入每个粉丝的收件箱，粉丝过多时只写入作者的发件箱，由粉丝读取时拉取。
+     * 关注关系图构建好后粉丝数和粉丝列表都从本地内存读取，否则查询数据库
+     */
+    private void pushToFollowers(Blog blog) {
+        Long authorId = blog.getUserId();
+        String blogId = blog.getId().toString();
+        long now = System.currentTimeMillis();
+        boolean useGraph = followGraph.isReady();
+        // 1. 大V：只写发件箱
+        int followers = useGraph
+                ? followGraph.followerCount(authorId)
+                : followService.query().eq("follow_user_id", authorId).count();
+        if (followers > FEED_PUSH_MAX_FOLLOWERS) {
+            String outbox = FEED_OUTBOX_KEY + authorId;
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                conn.zAdd(outbox, now, blogId);
+                conn.zRemRange(outbox, 0, -FEED_MAX_SIZE - 1);
+                conn.sAdd(FEED_BIG_V_KEY, authorId.toString());
+                return null;
+            });
+            return;
+        }
+
+        // 2. 普通作者：分批写入粉丝的收件箱
+        if (useGraph) {
+            long[] followerIds = followGraph.followers(authorId);
+            for (int from = 0; from < followerIds.length; from += FEED_PUSH_BATCH_SIZE) {
+                pushToInboxes(followerIds, from, Math.min(from + FEED_PUSH_BATCH_SIZE, followerIds.length), blogId, now);
+            }
+            return;
+        }
+        long lastId = 0;
+        while (true) {
+            List<Follow> follows = followService.query()
+                    .select("id", "user_id")
+                    .eq("follow_user_id", authorId).gt("id", lastId)
+                    .orderByAsc("id").last("LIMIT " + FEED_PUSH_BATCH_SIZE).list();
+            if (follows.isEmpty()) {
+                break;
+            }
+            long[] followerIds = follows.stream().mapToLong(Follow::getUserId).toArray();
+            pushToInboxes(followerIds, 0, followerIds.length, blogId, now);
+            if (follows.size() < FEED_PUSH_BATCH_SIZE) {
+                break;
+            }
+            lastId = follows.get(follows.size() - 1).getId();
+        }
+    }
+
+    /**
+     * 通过管道把博客写入一批粉丝的收件箱，收件箱只保留最新的 FEED_MAX_SIZE 条
+     */
+    private void pushToInboxes(long[] followerIds, int from, int to, String blogId, long now) {
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            for (int i = from; i < to; i++) {
+                String inbox = FEED_KEY + followerIds[i];
+                conn.zAdd(inbox, now, blogId);
+                conn.zRemRange(inbox, 0, -FEED_MAX_SIZE - 1);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 查询一页热门博客，顺序与排行榜一致
+     */
+    private List<Blog> queryHotRecords(Integer current) {
+        long offset = (long) (current - 1) * MAX_PAGE_SIZE;
+        List<Long> ids = blogHotRanking.range(offset, MAX_PAGE_SIZE);
+        if (ids == null) {
+            // 排行榜还没有初始化，根据点赞数分页查询，不需要总数，跳过 COUNT 查询
+            Page<Blog> page = query()
+                    .orderByDesc("liked")
+                    .page(new Page<>(current, MAX_PAGE_SIZE, false));
+            return page.getRecords();
+        }
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Blog> records = listByIds(ids);
+        records.sort(Comparator.comparingInt(blog -> ids.indexOf(blog.getId())));
+        return records;
+    }
+
+    /**
+     * 点赞或取消点赞：点赞记录保存在 Redis 的 ZSET 中（一人只能点赞一次），
+     * 点赞数交给计数服务累计，批量写入数据库；先通过博客详情缓存确认博客存在
+     * @param id 博客id
+     * @return 点赞后的状态，true 代表已点赞
+     */
+    public Result likeBlog(Long id) {
+        Long userId = UserHolder.getUser().getId();
+        // 1. 确认博客存在，不存在的博客（包括空值缓存）不创建点赞记录和计数
+        List<Object> cached = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            conn.get(CACHE_BLOG_KEY + id);
+            conn.get(CACHE_BLOG_VERSION_KEY + id);
+            return null;
+        });
+        String json = (String) cached.get(0);
+        if (json == null ? loadBlog(id, (String) cached.get(1)) == null : json.isEmpty()) {
+            return Result.fail("博客不存在！");
+        }
+        // 2. 点赞或取消点赞
+        Long liked = stringRedisTemplate.execute(
+                LIKE_SCRIPT,
+                Collections.singletonList(BLOG_LIKED_KEY + id),
+                userId.toString(), String.valueOf(System.currentTimeMillis()));
+        boolean isLike = liked != null && liked == 1L;
+        counterService.increment(Counter.BLOG_LIKED, id, isLike ? 1 : -1);
+        blogHotRanking.onLike(id, isLike);
+        return Result.ok(isLike);
+    }
+
+    /**
+     * 异步刷新已经缓存的博客详情：只重建缓存中存在的博客，重建时直接覆盖，读请求不会因为刷新而未命中；
+     * 查询数据库期间缓存被删除或者版本号变化（博客被修改）时放弃写回，避免旧数据覆盖
+     */
+    private void refreshBlogCacheAsync(Collection<Long> ids) {
+        List<Long> blogIds = new ArrayList<>(ids);
+        BLOG_CACHE_REFRESH_EXECUTOR.submit(() -> {
+            try {
+                // 1. 找出缓存中存在的博客，同时记下版本号
+                List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    StringRedisConnection conn = (StringRedisConnection) connection;
+                    blogIds.forEach(id -> {
+                        conn.exists(CACHE_BLOG_KEY + id);
+                        conn.get(CACHE_BLOG_VERSION_KEY + id);
+                    });
+                    return null;
+                });
+                Map<Long, String> versions = new LinkedHashMap<>();
+                for (int i = 0; i < blogIds.size(); i++) {
+                    if (Boolean.TRUE.equals(results.get(2 * i))) {
+                        versions.put(blogIds.get(i), (String) results.get(2 * i + 1));
+                    }
+                }
+                if (versions.isEmpty()) {
+                    return;
+                }
+                // 2. 批量查询博客和作者，缓存仍然存在且版本号没有变化时才覆盖
+                List<Blog> blogs = listByIds(versions.keySet());
+                fillAuthors(blogs);
+                blogs.forEach(blog -> cacheClient.setIfVersion(CACHE_BLOG_KEY + blog.getId(),
+                        CACHE_BLOG_VERSION_KEY + blog.getId(), versions.get(blog.getId()),
+                        blog, CACHE_BLOG_TTL, TimeUnit.MINUTES, true));
+            } catch (Exception e) {
+                log.error("刷新博客详情缓存失败", e);
+            }
+        });
+    }
+
+    /**
+     * 批量查询作者，填充昵称和头像
+     */
+    private void fillAuthors(List<Blog> blogs) {
+        Map<Long, UserDTO> users = userService.getUsers(
+                blogs.stream().map(Blog::getUserId).collect(Collectors.toList()));
+        blogs.forEach(blog -> {
+            UserDTO user = users.get(blog.getUserId());
+            if (user != null) {
+                blog.setName(user.getNickName());
+                blog.setIcon(user.getIcon());
+            }
+        });
+    }
+
+    /**
+     * 通过管道一次查询当前用户是否点赞了这些博客，未登录时不填充
+     */
+    private void fillIsLike(List<Blog> blogs) {
+        UserDTO user = UserHolder.getUser();
+        if (user == null || blogs.isEmpty()) {
+            return;
+        }
+        String userId = user.getId().toString();
+        List<Object> scores = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            for (Blog blog : blogs) {
+                conn.zScore(BLOG_LIKED_KEY + blog.getId(), userId);
+            }
+            return null;
+        });
+        for (int i = 0; i < blogs.size(); i++) {
+            blogs.get(i).setIsLike(scores.get(i) != null);
+        }
+    }
 }
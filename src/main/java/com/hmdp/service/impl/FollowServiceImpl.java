@@ -1,20 +1,200 @@
 package com.hmdp.service.impl;
 
+import cn.hutool.core.util.BooleanUtil;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.hmdp.dto.Result;
+import com.hmdp.dto.UserDTO;
 import com.hmdp.entity.Follow;
 import com.hmdp.mapper.FollowMapper;
 import com.hmdp.service.IFollowService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmdp.service.IUserService;
+import com.hmdp.utils.Counter;
+import com.hmdp.utils.CounterService;
+import com.hmdp.utils.FollowGraph;
+import com.hmdp.utils.UserHolder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.hmdp.utils.RedisConstants.*;
 
 /**
- * <p>
- *  服务实现类
- * </p>
- *
- * @author 虎哥
- * @since 2021-12-22
+ * 关注相关接口：关注关系保存在 tb_follow 中，每个用户关注的人同时保存在 Redis Set 中，
+ * 是否关注、共同关注都只访问 Redis
+ * @author Ghost
+ * @version 1.0
  */
+@Slf4j
 @Service
 public class FollowServiceImpl extends ServiceImpl<FollowMapper, Follow> implements IFollowService {
 
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private IUserService userService;
+
+    @Resource
+    private CounterService counterService;
+
+    @Resource
+    private FollowGraph followGraph;
+
+    private static final DefaultRedisScript<Long> FOLLOW_SCRIPT;
+    private static final DefaultRedisScript<Long> FOLLOW_LOAD_SCRIPT;
+
+    /**
+     * 初始化 Lua 脚本
+     */
+    static {
+        FOLLOW_SCRIPT = new DefaultRedisScript<>();
+        FOLLOW_SCRIPT.setLocation(new ClassPathResource("follow.lua"));
+        FOLLOW_SCRIPT.setResultType(Long.class);
+        FOLLOW_LOAD_SCRIPT = new DefaultRedisScript<>();
+        FOLLOW_LOAD_SCRIPT.setLocation(new ClassPathResource("follow_load.lua"));
+        FOLLOW_LOAD_SCRIPT.setResultType(Long.class);
+    }
+
+    /**
+     * 关注或取关：先修改数据库，事务提交后同步 Redis 中的关注集合
+     * @param followUserId 被关注的用户id
+     * @param isFollow true 代表关注，false 代表取关
+     * @return
+     */
+    @Transactional
+    public Result follow(Long followUserId, Boolean isFollow) {
+        Long userId = UserHolder.getUser().getId();
+        if (userId.equals(followUserId)) {
+            return Result.fail("不能关注自己！");
+        }
+        boolean follow = BooleanUtil.isTrue(isFollow);
+        // 1. 修改关注关系，重复关注、重复取关不做任何修改
+        boolean changed;
+        if (follow) {
+            try {
+                changed = save(new Follow().setUserId(userId).setFollowUserId(followUserId));
+            } catch (DuplicateKeyException e) {
+                changed = false;
+            }
+        } else {
+            changed = remove(new QueryWrapper<Follow>().eq("user_id", userId).eq("follow_user_id", followUserId));
+        }
+        if (!changed) {
+            return Result.ok();
+        }
+
+        // 2. 事务提交后同步关注集合和关注关系图，关注数、粉丝数交给计数服务批量写回
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                int delta = follow ? 1 : -1;
+                counterService.increment(Counter.USER_FOLLOWEE, userId, delta);
+                counterService.increment(Counter.USER_FANS, followUserId, delta);
+                stringRedisTemplate.execute(FOLLOW_SCRIPT,
+                        Arrays.asList(FOLLOWS_KEY + userId, FOLLOWS_VERSION_KEY + userId),
+                        follow ? "1" : "0", followUserId.toString(),
+                        String.valueOf(TimeUnit.DAYS.toSeconds(CACHE_VERSION_TTL)));
+                followGraph.publish(userId, followUserId, follow);
+            }
+        });
+        return Result.ok();
+    }
+
+    /**
+     * 当前登录用户是否关注了该用户
+     * @param followUserId 被关注的用户id
+     * @return true 代表已关注
+     */
+    public Result isFollow(Long followUserId) {
+        Long userId = UserHolder.getUser().getId();
+        loadFollowees(userId);
+        Boolean member = stringRedisTemplate.opsForSet().isMember(FOLLOWS_KEY + userId, followUserId.toString());
+        return Result.ok(BooleanUtil.isTrue(member));
+    }
+
+    /**
+     * 当前登录用户与该用户的共同关注：两个关注集合求交集，再批量查询用户
+     * @param userId 用户id
+     * @return 共同关注的用户基本信息
+     */
+    public Result followCommons(Long userId) {
+        Long currentUserId = UserHolder.getUser().getId();
+        loadFollowees(userId);
+        List<Long> ids = intersectFollowees(currentUserId, FOLLOWS_KEY + userId);
+        if (ids.isEmpty()) {
+            return Result.ok(Collections.emptyList());
+        }
+        Map<Long, UserDTO> users = userService.getUsers(ids);
+        return Result.ok(ids.stream().map(users::get).filter(user -> user != null).collect(Collectors.toList()));
+    }
+
+    /**
+     * 用户关注的人与 Redis 中另一个用户id集合的交集
+     * @param userId 用户id
+     * @param setKey 用户id集合的 key
+     * @return 交集中的用户id，不包含占位成员
+     */
+    public List<Long> intersectFollowees(Long userId, String setKey) {
+        loadFollowees(userId);
+        Set<String> ids = stringRedisTemplate.opsForSet().intersect(FOLLOWS_KEY + userId, setKey);
+        if (ids == null || ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return ids.stream().filter(id -> !FOLLOWS_PLACEHOLDER.equals(id)).map(Long::valueOf).collect(Collectors.toList());
+    }
+
+    /**
+     * 关注集合不在 Redis 中时，从数据库完整加载：查询数据库之前记下版本号，
+     * 查询期间有关注、取关（事务提交后 follow.lua 找不到集合，不会同步）时放弃这次结果重新加载，避免写入旧的集合
+     */
+    private void loadFollowees(Long userId) {
+        String key = FOLLOWS_KEY + userId;
+        String versionKey = FOLLOWS_VERSION_KEY + userId;
+        List<String> keys = Arrays.asList(key, versionKey);
+        for (int i = 0; i < FOLLOWS_LOAD_RETRIES; i++) {
+            // 1. 一次往返查询集合是否存在和版本号
+            List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                conn.exists(key);
+                conn.get(versionKey);
+                return null;
+            });
+            if (BooleanUtil.isTrue((Boolean) results.get(0))) {
+                return;
+            }
+            String version = results.get(1) == null ? "0" : (String) results.get(1);
+            // 2. 只查询被关注的用户id，走 (user_id, follow_user_id) 覆盖索引
+            List<String> args = new ArrayList<>();
+            args.add(version);
+            args.add(String.valueOf(TimeUnit.DAYS.toSeconds(FOLLOWS_TTL)));
+            args.add(FOLLOWS_PLACEHOLDER);
+            query().select("follow_user_id").eq("user_id", userId).list()
+                    .forEach(follow -> args.add(follow.getFollowUserId().toString()));
+            // 3. 版本号没有变化时写入
+            Long loaded = stringRedisTemplate.execute(FOLLOW_LOAD_SCRIPT, keys, args.toArray());
+            if (loaded != null && loaded == 1L) {
+                return;
+            }
+        }
+        log.warn("加载用户 {} 的关注集合时关注关系频繁变化，放弃加载，由下一次查询重新加载", userId);
+    }
 }
@@ -1,6 +1,5 @@
 package com.hmdp.service.impl;
 
-import cn.hutool.core.util.BooleanUtil;
 import cn.hutool.core.util.StrUtil;
 import cn.hutool.json.JSONObject;
 import cn.hutool.json.JSONUtil;
@@ -10,7 +9,12 @@ import com.hmdp.mapper.ShopMapper;
 import com.hmdp.service.IShopService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.ILock;
+import com.hmdp.utils.LockMonitor;
 import com.hmdp.utils.RedisData;
+import com.hmdp.utils.RedisLockNotifier;
+import com.hmdp.utils.SimpleRedisLock;
+import com.hmdp.utils.TwoTierLock;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -37,6 +41,10 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
     private StringRedisTemplate stringRedisTemplate;// 操作 Redis 数据库的工具类
     @Resource
     private CacheClient cacheClient;// 缓存工具类
+    @Resource
+    private RedisLockNotifier redisLockNotifier;// 分布式锁解锁通知
+    @Resource
+    private LockMonitor lockMonitor;// 分布式锁监控
 
     /**
      * 根据 id 查询商铺信息
@@ -89,16 +97,19 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
         }
 
         // 4. 实现缓存重建
-        // 4.1 获取互斥锁
+        // 4.1 获取互斥锁，锁被占用时挂起等待解锁通知，不再休眠轮询
+        // 本节点的其它线程在本地排队，只有一个线程访问 Redis
         String lockKey = LOCK_SHOP_KEY + id;
+        ILock lock = new TwoTierLock(lockKey, lockMonitor.wrap(lockKey,
+                new SimpleRedisLock("shop:" + id, stringRedisTemplate, redisLockNotifier)));
+        boolean isLock = false;
         Shop shop = null;
         try {
-            boolean isLock = tryLock(lockKey);
+            isLock = lock.lock(LOCK_SHOP_TTL, TimeUnit.SECONDS);
             // 4.2 判断是否获取成功
             if(!isLock) {
-                // 4.3 获取锁失败，休眠一段时间再重试
-                Thread.sleep(50);
-                return queryWithMutex(id);
+                // 4.3 等待超时，返回失败
+                return null;
             }
             // 4.4 获取锁成功，根据 id 查询数据库，重新写入 Redis
             // 获取锁成功之后应该再次检测 Redis 缓存是否存在，如果存在则无需重建
@@ -107,6 +118,9 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
                 // 反序列化成 Java 对象
                 return JSONUtil.toBean(shopJson, Shop.class);
             }
+            if (shopJson != null) {
+                return null;
+            }
             // 缓存里还是没有商铺数据，继续查询数据库
             shop = getById(id);
             // 模拟重建缓存的延迟
@@ -124,31 +138,14 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
             throw new RuntimeException(e);
         } finally {
             // 释放锁
-            unLock(lockKey);
+            if (isLock) {
+                lock.unLock();
+            }
         }
         // 6. 返回商铺查询结果
         return shop;
     }
 
-
-    /**
-     * 尝试获取互斥锁
-     * @param key 互斥锁的键名
-     * @return 成功：true 失败：false
-     */
-    private boolean tryLock(String key) {
-        Boolean flag = stringRedisTemplate.opsForValue().setIfAbsent(key, "1", 10, TimeUnit.SECONDS);
-        return BooleanUtil.isTrue(flag);
-    }
-
-    /**
-     * 释放锁
-     * @param key 互斥锁的键名
-     */
-    private void unLock(String key) {
-        stringRedisTemplate.delete(key);
-    }
-
     /**
      * 添加逻辑过期时间
      * @param id 商铺 id
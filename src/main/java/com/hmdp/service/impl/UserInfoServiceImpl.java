@@ -4,7 +4,20 @@ import com.hmdp.entity.UserInfo;
 import com.hmdp.mapper.UserInfoMapper;
 import com.hmdp.service.IUserInfoService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmdp.dto.Result;
+import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.Counter;
+import com.hmdp.utils.CounterService;
+import com.hmdp.utils.UserHolder;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.Resource;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.utils.RedisConstants.CACHE_USER_INFO_KEY;
+import static com.hmdp.utils.RedisConstants.CACHE_USER_TTL;
 
 /**
  * <p>
@@ -17,4 +30,58 @@ import org.springframework.stereotype.Service;
 @Service
 public class UserInfoServiceImpl extends ServiceImpl<UserInfoMapper, UserInfo> implements IUserInfoService {
 
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private CacheClient cacheClient;
+
+    @Resource
+    private CounterService counterService;
+
+    /**
+     * 查询用户详情，优先查询缓存；粉丝数、关注数加上还没有写回数据库的增量
+     * @param userId 用户id
+     * @return 没有详情时返回 null
+     */
+    public UserInfo getUserInfo(Long userId) {
+        UserInfo info = cacheClient.queryWithPassThrough(CACHE_USER_INFO_KEY, userId, UserInfo.class, this::getById,
+                CACHE_USER_TTL, TimeUnit.MINUTES);
+        if (info != null) {
+            info.setFans((int) counterService.get(Counter.USER_FANS, userId, info.getFans()));
+            info.setFollowee((int) counterService.get(Counter.USER_FOLLOWEE, userId, info.getFollowee()));
+        }
+        return info;
+    }
+
+    /**
+     * 修改当前登录用户的详情，并删除缓存
+     * @param userInfo 用户详情
+     * @return
+     */
+    @Transactional
+    public Result updateUserInfo(UserInfo userInfo) {
+        Long userId = UserHolder.getUser().getId();
+        // 只能修改自己的详情，粉丝数、关注数、积分等统计字段不允许修改
+        userInfo.setUserId(userId);
+        userInfo.setFans(null);
+        userInfo.setFollowee(null);
+        userInfo.setCredits(null);
+        userInfo.setLevel(null);
+        userInfo.setCreateTime(null);
+        userInfo.setUpdateTime(null);
+        // 没有可以修改的字段时 UPDATE 语句没有 SET 子句，直接返回
+        if (userInfo.getCity() == null && userInfo.getIntroduce() == null
+                && userInfo.getGender() == null && userInfo.getBirthday() == null) {
+            return Result.fail("没有需要修改的内容！");
+        }
+        // 1. 更新数据库，第一次修改时先创建详情记录
+        if (!updateById(userInfo)) {
+            getBaseMapper().insertIfAbsent(userId);
+            updateById(userInfo);
+        }
+        // 2. 删除缓存
+        stringRedisTemplate.delete(CACHE_USER_INFO_KEY + userId);
+        return Result.ok();
+    }
 }
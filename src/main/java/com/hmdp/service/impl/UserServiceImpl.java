@@ -1,9 +1,8 @@
 package com.hmdp.service.impl;
 
-import cn.hutool.core.bean.BeanUtil;
-import cn.hutool.core.bean.copier.CopyOptions;
 import cn.hutool.core.lang.UUID;
 import cn.hutool.core.util.RandomUtil;
+import cn.hutool.core.util.StrUtil;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.hmdp.dto.LoginFormDTO;
 import com.hmdp.dto.Result;
@@ -11,17 +10,23 @@ import com.hmdp.dto.UserDTO;
 import com.hmdp.entity.User;
 import com.hmdp.mapper.UserMapper;
 import com.hmdp.service.IUserService;
+import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.LoginTokenManager;
 import com.hmdp.utils.RegexUtils;
+import com.hmdp.utils.UserDTOMapper;
+import com.hmdp.utils.UserHolder;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.Resource;
 import javax.servlet.http.HttpSession;
 
-import java.util.HashMap;
+import java.util.Collection;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static com.hmdp.utils.RedisConstants.*;
 import static com.hmdp.utils.SystemConstants.USER_NICK_NAME_PREFIX;
@@ -38,6 +43,12 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements IU
     @Resource
     private StringRedisTemplate stringRedisTemplate;
 
+    @Resource
+    private LoginTokenManager loginTokenManager;
+
+    @Resource
+    private CacheClient cacheClient;
+
     /**
      * 发送短信验证码
      * @param phone
@@ -95,16 +106,18 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements IU
             user = createUserWithPhone(phone);
         }
 
+        UserDTO userDTO = UserDTOMapper.fromUser(user);
+        // 开启签名 token 时，用户信息保存在 token 中，不写 Redis
+        if (loginTokenManager.isSigned()) {
+            return Result.ok(loginTokenManager.createSignedToken(userDTO));
+        }
+
         // 7、将用户信息保存到 Redis 中
         // 7.1 生成 token 作为登录凭证保存到 Redis 中
         String token = UUID.randomUUID().toString(true);
 
         // 7.2 将 User 对象转为 map 进行存储
-        UserDTO userDTO = BeanUtil.copyProperties(user, UserDTO.class);
-        Map<String, Object> userMap = BeanUtil.beanToMap(userDTO,new HashMap<>(),
-                CopyOptions.create()
-                        .setIgnoreNullValue(true)
-                        .setFieldValueEditor((fieldName, fieldValue) -> fieldValue.toString()));
+        Map<String, String> userMap = UserDTOMapper.toHash(userDTO);
 
         // 7.3 将用户信息 User 保存到 Redis 中
         stringRedisTemplate.opsForHash().putAll(LOGIN_USER_KEY +token, userMap);
@@ -116,6 +129,65 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements IU
         return Result.ok(token);
     }
 
+    /**
+     * 登出功能：普通 token 删除 Redis 中的用户信息，两种 token 都记录到注销集合，
+     * 使各节点本地缓存或者本地校验的 token 失效
+     * @param token 登录凭证
+     * @return
+     */
+    public Result logout(String token) {
+        if (StrUtil.isBlank(token)) {
+            return Result.fail("未登录！");
+        }
+        if (!loginTokenManager.isSignedToken(token)) {
+            stringRedisTemplate.delete(LOGIN_USER_KEY + token);
+        }
+        loginTokenManager.revoke(token);
+        return Result.ok();
+    }
+
+    /**
+     * 查询用户基本信息（昵称、头像），优先查询缓存
+     * @param id 用户id
+     * @return 用户不存在时返回 null
+     */
+    public UserDTO getUser(Long id) {
+        return cacheClient.queryWithPassThrough(CACHE_USER_KEY, id, UserDTO.class,
+                userId -> UserDTOMapper.fromUser(getById(userId)), CACHE_USER_TTL, TimeUnit.MINUTES);
+    }
+
+    /**
+     * 批量查询用户基本信息，一次 MGET 查询缓存，未命中的一次性查询数据库
+     * @param ids 用户id
+     * @return 用户id -> 用户基本信息，不存在的用户不返回
+     */
+    public Map<Long, UserDTO> getUsers(Collection<Long> ids) {
+        return cacheClient.queryBatchWithPassThrough(CACHE_USER_KEY, ids, UserDTO.class,
+                missing -> listByIds(missing).stream()
+                        .collect(Collectors.toMap(User::getId, UserDTOMapper::fromUser)),
+                CACHE_USER_TTL, TimeUnit.MINUTES);
+    }
+
+    /**
+     * 修改当前登录用户的昵称、头像，并删除缓存
+     * @param profile 新的昵称、头像
+     * @return
+     */
+    @Transactional
+    public Result updateProfile(UserDTO profile) {
+        Long userId = UserHolder.getUser().getId();
+        if (StrUtil.isBlank(profile.getNickName()) && profile.getIcon() == null) {
+            return Result.fail("昵称和头像不能同时为空！");
+        }
+        // 1. 更新数据库，只更新传入的字段
+        update().set(StrUtil.isNotBlank(profile.getNickName()), "nick_name", profile.getNickName())
+                .set(profile.getIcon() != null, "icon", profile.getIcon())
+                .eq("id", userId).update();
+        // 2. 删除缓存
+        stringRedisTemplate.delete(CACHE_USER_KEY + userId);
+        return Result.ok();
+    }
+
     private User createUserWithPhone(String phone) {
         // 创建用户，保存到数据库中
         User user = new User();
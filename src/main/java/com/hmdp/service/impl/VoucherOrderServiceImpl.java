@@ -1,26 +1,49 @@
 package com.hmdp.service.impl;
 
-import com.hmdp.config.RedissonConfig;
+import cn.hutool.core.util.StrUtil;
 import com.hmdp.dto.Result;
-import com.hmdp.dto.UserDTO;
+import com.hmdp.dto.SeckillResultDTO;
 import com.hmdp.entity.SeckillVoucher;
 import com.hmdp.entity.VoucherOrder;
 import com.hmdp.mapper.VoucherOrderMapper;
 import com.hmdp.service.ISeckillVoucherService;
 import com.hmdp.service.IVoucherOrderService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
-import com.hmdp.utils.RedisIDWorker;
-import com.hmdp.utils.SimpleRedisLock;
+import com.hmdp.utils.ILock;
+import com.hmdp.utils.LockMonitor;
+import com.hmdp.utils.RedissonLockAdapter;
+import com.hmdp.utils.SeckillResultNotifier;
+import com.hmdp.utils.SnowflakeIDWorker;
+import com.hmdp.utils.TwoTierLock;
 import com.hmdp.utils.UserHolder;
-import org.redisson.api.RLock;
+import lombok.extern.slf4j.Slf4j;
 import org.redisson.api.RedissonClient;
 import org.springframework.aop.framework.AopContext;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.context.request.async.DeferredResult;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
 import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.hmdp.utils.RedisConstants.*;
+import static com.hmdp.utils.SystemConstants.ORDER_STATUS_CANCELLED;
+import static com.hmdp.utils.SystemConstants.ORDER_STATUS_UNPAID;
 
 /**
  * 优惠券下单业务实现类
@@ -28,6 +51,7 @@ import java.time.LocalDateTime;
  * @author Ghost
  * @version 1.0
  */
+@Slf4j
 @Service
 public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, VoucherOrder> implements IVoucherOrderService {
 
@@ -35,7 +59,7 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
     private ISeckillVoucherService seckillVoucherService;
 
     @Resource
-    private RedisIDWorker redisIDWorker;
+    private SnowflakeIDWorker snowflakeIDWorker;
 
     @Resource
     private StringRedisTemplate stringRedisTemplate;
@@ -46,6 +70,125 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
     @Resource
     private RedissonClient redissonClient;
 
+    @Resource
+    private LockMonitor lockMonitor;
+
+    @Resource
+    private SeckillResultNotifier seckillResultNotifier;
+
+    /**
+     * 长轮询最长挂起时间
+     */
+    private static final long MAX_POLL_TIMEOUT_MILLIS = 30000L;
+
+    /**
+     * 重复下单时的失败原因，这种情况下用户已经有订单，补偿时保留下单资格
+     */
+    private static final String DUPLICATE_ORDER_MSG = "每个用户只能购买一次！";
+
+    private static final DefaultRedisScript<Long> SECKILL_SCRIPT;
+    private static final DefaultRedisScript<Long> ROLLBACK_SCRIPT;
+
+    /**
+     * 初始化 Lua 脚本
+     */
+    static {
+        SECKILL_SCRIPT = new DefaultRedisScript<>();
+        SECKILL_SCRIPT.setLocation(new ClassPathResource("seckill.lua"));
+        SECKILL_SCRIPT.setResultType(Long.class);
+        ROLLBACK_SCRIPT = new DefaultRedisScript<>();
+        ROLLBACK_SCRIPT.setLocation(new ClassPathResource("seckill_rollback.lua"));
+        ROLLBACK_SCRIPT.setResultType(Long.class);
+    }
+
+    /**
+     * 阻塞队列：保存待落库的订单
+     */
+    private final BlockingQueue<VoucherOrder> orderTasks = new ArrayBlockingQueue<>(1024 * 1024);
+
+    /**
+     * 异步下单的线程池
+     */
+    private static final ExecutorService SECKILL_ORDER_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    /**
+     * 代理对象（事务），异步线程中无法通过 AopContext 获取
+     */
+    private IVoucherOrderService proxy;
+
+    @PostConstruct
+    private void init() {
+        SECKILL_ORDER_EXECUTOR.submit(new VoucherOrderHandler());
+    }
+
+    @PreDestroy
+    private void destroy() {
+        SECKILL_ORDER_EXECUTOR.shutdownNow();
+    }
+
+    /**
+     * 从阻塞队列中取出订单并落库
+     */
+    private class VoucherOrderHandler implements Runnable {
+        @Override
+        public void run() {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    // 1. 获取队列中的订单信息
+                    VoucherOrder voucherOrder = orderTasks.take();
+                    // 2. 创建订单
+                    handleVoucherOrder(voucherOrder);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (Exception e) {
+                    log.error("处理订单异常", e);
+                }
+            }
+        }
+    }
+
+    private void handleVoucherOrder(VoucherOrder voucherOrder) {
+        Long userId = voucherOrder.getUserId();
+        // 兜底：Redis 已经保证了一人一单，这里仍然加锁防止重复落库
+        String lockName = "lock:order:" + userId;
+        ILock lock = new TwoTierLock(lockName,
+                lockMonitor.wrap(lockName, new RedissonLockAdapter(redissonClient.getLock(lockName))));
+        boolean isLock;
+        try {
+            isLock = lock.lock(0, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            isLock = false;
+        }
+        if (!isLock) {
+            // 同一用户的另一笔订单正在落库，只归还库存
+            log.error("不允许重复下单，订单 {}", voucherOrder.getId());
+            rollback(voucherOrder, false);
+            completeResult(voucherOrder.getId(), SeckillResultDTO.FAILED, "不允许重复下单！");
+            return;
+        }
+        try {
+            Result result = proxy.createVoucherOrder(voucherOrder);
+            if (result.getSuccess()) {
+                // 登记支付截止时间，超时未支付由定时任务取消
+                long deadline = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(ORDER_PAY_TTL);
+                stringRedisTemplate.opsForZSet().add(ORDER_EXPIRE_KEY, voucherOrder.getId().toString(), deadline);
+                completeResult(voucherOrder.getId(), SeckillResultDTO.SUCCESS, null);
+            } else {
+                // 数据库拒绝了订单，归还 Redis 中预扣的库存；用户已经有订单时保留下单资格
+                rollback(voucherOrder, !DUPLICATE_ORDER_MSG.equals(result.getErrorMsg()));
+                completeResult(voucherOrder.getId(), SeckillResultDTO.FAILED, result.getErrorMsg());
+            }
+        } catch (Exception e) {
+            // 订单没有落库，归还 Redis 中预扣的库存和下单资格，用户可以重新抢购
+            log.error("订单 {} 落库失败", voucherOrder.getId(), e);
+            rollback(voucherOrder, true);
+            completeResult(voucherOrder.getId(), SeckillResultDTO.FAILED, "下单失败，请重试！");
+        } finally {
+            lock.unLock();
+        }
+    }
+
     /**
      * 抢购秒杀优惠券
      *
@@ -55,6 +198,9 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
     public Result seckillVoucher(Long voucherId) {
         // 1. 查询优惠券信息
         SeckillVoucher voucher = seckillVoucherService.getById(voucherId);
+        if (voucher == null) {
+            return Result.fail("优惠券不存在！");
+        }
 
         // 2. 判断秒杀是否开始
         if (voucher.getBeginTime().isAfter(LocalDateTime.now())) {
@@ -66,76 +212,166 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
             return Result.fail("秒杀已结束！");
         }
 
-        // 4. 判断库存是否充足
-        if (voucher.getStock() < 1) {
-            return Result.fail("库存不足！");
+        // 4. 执行 Lua 脚本，判断库存和一人一单，有资格则预扣库存
+        Long userId = UserHolder.getUser().getId();
+        long orderId = snowflakeIDWorker.nextId();
+        Long r = stringRedisTemplate.execute(
+                SECKILL_SCRIPT,
+                Collections.emptyList(),
+                voucherId.toString(), userId.toString(), String.valueOf(orderId),
+                String.valueOf(TimeUnit.MINUTES.toSeconds(SECKILL_RESULT_TTL)));
+        int code = r == null ? 1 : r.intValue();
+        if (code != 0) {
+            // 没有购买资格
+            return Result.fail(code == 1 ? "库存不足！" : "不允许重复下单！");
         }
 
-        /*Long userId = UserHolder.getUser().getId();
-        // 使用 JDK 的同步锁
-        synchronized (userId.toString().intern()) {// 锁的是当前用户
-            // 获取代理对象（事务）
-            IVoucherOrderService proxy = (IVoucherOrderService) AopContext.currentProxy();
-            return proxy.createVoucherOrder(voucherId);
-        }*/
-
-        // 使用分布式锁
-        // 创建锁对象
-        Long userId = UserHolder.getUser().getId();
-//        SimpleRedisLock simpleRedisLock = new SimpleRedisLock("order:" + userId, stringRedisTemplate);
-        RLock lock = redissonClient.getLock("lock:order:" + userId);// 获取锁对象，指定锁名称
-        // 获取锁
-        boolean isLock = lock.tryLock();
-        // 判断是否获取成功
-        if(!isLock) {
-            // 失败，返回错误信息
-            return Result.fail("不允许重复下单！");
-        }
-
-        // 成功，执行下单操作
-        // 获取代理对象（事务）
-        try {
-            IVoucherOrderService proxy = (IVoucherOrderService) AopContext.currentProxy();
-            return proxy.createVoucherOrder(voucherId);
-        } finally {
-            // 下单完成，释放锁
-            lock.unlock();
+        // 5. 有购买资格，把下单信息保存到阻塞队列，异步落库
+        VoucherOrder voucherOrder = new VoucherOrder();
+        voucherOrder.setId(orderId);
+        voucherOrder.setUserId(userId);
+        voucherOrder.setVoucherId(voucherId);
+        proxy = (IVoucherOrderService) AopContext.currentProxy();
+        if (!orderTasks.offer(voucherOrder)) {
+            // 队列已满，归还预扣的库存和下单资格
+            log.warn("订单队列已满，订单 {} 下单失败", orderId);
+            rollback(voucherOrder, true);
+            completeResult(orderId, SeckillResultDTO.FAILED, "系统繁忙，请稍后重试！");
+            return Result.fail("系统繁忙，请稍后重试！");
         }
 
+        // 6. 返回订单 id，客户端通过订单结果接口查询是否下单成功
+        return Result.ok(orderId);
     }
 
     @Transactional
-    public Result createVoucherOrder(Long voucherId) {
+    public Result createVoucherOrder(VoucherOrder voucherOrder) {
         // 5. 一人一单
         // 5.1 用户 id
+        Long userId = voucherOrder.getUserId();
+        Long voucherId = voucherOrder.getVoucherId();
+        // 5.2 查询订单是否存在，超时取消的订单不算（取消时已经归还 Redis 中的下单资格，见 OrderExpireTask）
+        int count = query().eq("user_id", userId).eq("voucher_id", voucherId)
+                .ne("status", ORDER_STATUS_CANCELLED).count();
+        if (count > 0) {
+            return Result.fail(DUPLICATE_ORDER_MSG);
+        }
+
+        // 6. 库存充足扣减库存
+        boolean success = seckillVoucherService.update().
+                setSql("stock = stock - 1").// set stock = stock - 1
+                        eq("voucher_id", voucherId).gt("stock", 0).// where voucher_id = ? and stock > 0
+                        update();
+        if (!success) {// 更新库存失败
+            return Result.fail("库存不足！");
+        }
+
+        // 7. 创建订单
+        save(voucherOrder);
+
+        // 8. 返回订单 id
+        return Result.ok(voucherOrder.getId());
+    }
+
+    /**
+     * 批量取消超时未支付的订单，并归还数据库中的库存
+     *
+     * @param orderIds 到期的订单id
+     * @return 实际被取消的订单
+     */
+    @Transactional
+    public List<VoucherOrder> cancelUnpaidOrders(List<Long> orderIds) {
+        // 1. 锁定仍未支付的订单，避免与支付并发
+        List<VoucherOrder> orders = query()
+                .in("id", orderIds)
+                .eq("status", ORDER_STATUS_UNPAID)
+                .last("FOR UPDATE")
+                .list();
+        if (orders.isEmpty()) {
+            return orders;
+        }
+        // 2. 批量修改订单状态为已取消
+        List<Long> ids = orders.stream().map(VoucherOrder::getId).collect(Collectors.toList());
+        update().set("status", ORDER_STATUS_CANCELLED)
+                .in("id", ids)
+                .eq("status", ORDER_STATUS_UNPAID)
+                .update();
+        // 3. 按优惠券合并后归还库存，每张券一条 update
+        Map<Long, Long> counts = orders.stream()
+                .collect(Collectors.groupingBy(VoucherOrder::getVoucherId, Collectors.counting()));
+        counts.forEach((voucherId, count) -> seckillVoucherService.update()
+                .setSql("stock = stock + " + count)
+                .eq("voucher_id", voucherId)
+                .update());
+        return orders;
+    }
+
+    /**
+     * 查询秒杀订单处理结果，支持长轮询
+     *
+     * @param orderId 订单 id
+     * @param timeout 订单仍在处理中时最多挂起的毫秒数，0 表示立即返回
+     * @return 订单处理结果
+     */
+    public DeferredResult<Result> queryOrderResult(Long orderId, Long timeout) {
         Long userId = UserHolder.getUser().getId();
-            // 5.2 查询订单是否存在
-            int count = query().eq("user_id", userId).eq("voucher_id", voucherId).count();
-            if (count > 0) {
-                return Result.fail("每个用户只能购买一次！");
-            }
+        long waitMillis = Math.min(Math.max(timeout, 0L), MAX_POLL_TIMEOUT_MILLIS);
+        DeferredResult<Result> deferred = new DeferredResult<>(waitMillis > 0 ? waitMillis : null);
 
-            // 6. 库存充足扣减库存
-            boolean success = seckillVoucherService.update().
-                    setSql("stock = stock - 1").// set stock = stock - 1
-                            eq("voucher_id", voucherId).gt("stock", 0).// where voucher_id = ? and stock > 0
-                            update();
-            if (!success) {// 更新库存失败
-                return Result.fail("库存不足！");
+        // 1. 需要挂起时先登记，再读结果，避免读完结果到登记之间订单完成而错过唤醒；
+        // 订单完成的通知通过 Redis 发布到所有节点，订单在哪个节点处理都能唤醒
+        if (waitMillis > 0) {
+            seckillResultNotifier.subscribe(orderId, deferred);
+            deferred.onTimeout(() ->
+                    deferred.setResult(Result.ok(new SeckillResultDTO(orderId, SeckillResultDTO.PENDING, null))));
+        }
+
+        // 2. 查询 Redis 中的处理结果
+        Map<Object, Object> record = stringRedisTemplate.opsForHash().entries(SECKILL_RESULT_KEY + orderId);
+        if (record.isEmpty()) {
+            // 2.1 结果记录已过期，回查数据库
+            VoucherOrder order = getById(orderId);
+            if (order == null || !order.getUserId().equals(userId)) {
+                deferred.setResult(Result.fail("订单不存在！"));
+            } else {
+                deferred.setResult(Result.ok(new SeckillResultDTO(orderId, SeckillResultDTO.SUCCESS, null)));
             }
+            return deferred;
+        }
+        // 2.2 只能查询自己的订单
+        if (!userId.toString().equals(record.get("userId"))) {
+            deferred.setResult(Result.fail("订单不存在！"));
+            return deferred;
+        }
+        int status = Integer.parseInt((String) record.get("status"));
+        if (status != SeckillResultDTO.PENDING || waitMillis == 0) {
+            deferred.setResult(Result.ok(new SeckillResultDTO(orderId, status, (String) record.get("errorMsg"))));
+        }
+        // 3. 仍在处理中，挂起请求等待唤醒或超时
+        return deferred;
+    }
+
+    /**
+     * 归还 Redis 中预扣的库存
+     * @param removeUser 是否同时移除下单用户，让用户可以重新抢购
+     */
+    private void rollback(VoucherOrder voucherOrder, boolean removeUser) {
+        stringRedisTemplate.execute(ROLLBACK_SCRIPT, Collections.emptyList(),
+                voucherOrder.getVoucherId().toString(), voucherOrder.getUserId().toString(), removeUser ? "1" : "0");
+    }
 
-            // 7. 创建订单
-            VoucherOrder voucherOrder = new VoucherOrder();
-            // 7.1 设置全局唯一订单 id
-            long orderId = redisIDWorker.nextId("order");
-            voucherOrder.setId(orderId);
-            // 7.2 设置用户 id
-            voucherOrder.setUserId(userId);
-            // 7.3 设置优惠券 id
-            voucherOrder.setVoucherId(voucherId);
-            save(voucherOrder);// 保存订单
-
-            // 8. 返回订单 id
-            return Result.ok(orderId);
+    /**
+     * 写入订单处理结果，并通知所有节点唤醒等待中的长轮询请求
+     */
+    private void completeResult(Long orderId, int status, String errorMsg) {
+        String key = SECKILL_RESULT_KEY + orderId;
+        Map<String, String> record = new HashMap<>();
+        record.put("status", String.valueOf(status));
+        if (StrUtil.isNotBlank(errorMsg)) {
+            record.put("errorMsg", errorMsg);
+        }
+        stringRedisTemplate.opsForHash().putAll(key, record);
+        stringRedisTemplate.expire(key, SECKILL_RESULT_TTL, TimeUnit.MINUTES);
+        seckillResultNotifier.publish(new SeckillResultDTO(orderId, status, errorMsg));
     }
 }
@@ -0,0 +1,32 @@
+package com.hmdp.task;
+
+import com.hmdp.utils.BlogHotRanking;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+
+/**
+ * 热门博客排行榜的定时重算任务：按当前时间重新计算排行榜中所有博客的衰减分数，
+ * 淘汰排名靠后的博客；排行榜不存在时（首次启动或 Redis 数据丢失）从数据库初始化
+ * @author Ghost
+ * @version 1.0
+ */
+@Slf4j
+@Component
+public class BlogHotRankTask {
+
+    @Resource
+    private BlogHotRanking blogHotRanking;
+
+    @Scheduled(fixedDelay = 60000L)
+    public void recompute() {
+        try {
+            blogHotRanking.recompute();
+        } catch (Exception e) {
+            // 重算失败不影响增量更新，下次重算时恢复
+            log.error("重算热门博客排行榜失败", e);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.hmdp.task;
+
+import com.hmdp.entity.VoucherOrder;
+import com.hmdp.service.IVoucherOrderService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.hmdp.utils.RedisConstants.*;
+
+/**
+ * 超时未支付订单的定时取消任务：
+ * 待支付订单按支付截止时间登记在 Redis ZSET 中，每秒取出到期的一批，
+ * 批量取消订单并归还数据库和 Redis 中的库存
+ * @author Ghost
+ * @version 1.0
+ */
+@Slf4j
+@Component
+public class OrderExpireTask {
+
+    /**
+     * 每批最多处理的订单数
+     */
+    private static final int BATCH_SIZE = 500;
+    /**
+     * 取消失败的订单重新登记时推迟的时间
+     */
+    private static final long RETRY_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private static final DefaultRedisScript<List> EXPIRE_SCRIPT;
+
+    /**
+     * 初始化 Lua 脚本
+     */
+    static {
+        EXPIRE_SCRIPT = new DefaultRedisScript<>();
+        EXPIRE_SCRIPT.setLocation(new ClassPathResource("order_expire.lua"));
+        EXPIRE_SCRIPT.setResultType(List.class);
+    }
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private IVoucherOrderService voucherOrderService;
+
+    @Scheduled(fixedDelay = 1000L)
+    public void cancelExpiredOrders() {
+        // 一次调度内把到期订单处理完，每批一个事务
+        while (true) {
+            // 1. 原子地取出一批到期订单
+            @SuppressWarnings("unchecked")
+            List<String> members = stringRedisTemplate.execute(
+                    EXPIRE_SCRIPT,
+                    Collections.singletonList(ORDER_EXPIRE_KEY),
+                    String.valueOf(System.currentTimeMillis()), String.valueOf(BATCH_SIZE));
+            if (members == null || members.isEmpty()) {
+                return;
+            }
+            List<Long> orderIds = members.stream().map(Long::valueOf).collect(Collectors.toList());
+
+            // 2. 批量取消订单并归还数据库库存
+            List<VoucherOrder> cancelled;
+            try {
+                cancelled = voucherOrderService.cancelUnpaidOrders(orderIds);
+            } catch (Exception e) {
+                // 取消失败，推迟后重新登记
+                log.error("取消超时订单失败，{} 个订单稍后重试", orderIds.size(), e);
+                double retryAt = System.currentTimeMillis() + RETRY_DELAY_MILLIS;
+                Set<ZSetOperations.TypedTuple<String>> tuples = members.stream()
+                        .map(id -> new DefaultTypedTuple<>(id, retryAt))
+                        .collect(Collectors.toSet());
+                stringRedisTemplate.opsForZSet().add(ORDER_EXPIRE_KEY, tuples);
+                return;
+            }
+
+            // 3. 归还 Redis 中的库存和下单资格
+            restoreRedisStock(cancelled);
+            log.debug("取消超时未支付订单 {} 个", cancelled.size());
+
+            if (members.size() < BATCH_SIZE) {
+                return;
+            }
+        }
+    }
+
+    private void restoreRedisStock(List<VoucherOrder> cancelled) {
+        if (cancelled.isEmpty()) {
+            return;
+        }
+        Map<Long, List<VoucherOrder>> byVoucher = cancelled.stream()
+                .collect(Collectors.groupingBy(VoucherOrder::getVoucherId));
+        // 使用管道，每张券两条命令；数据库的一人一单校验同样不计已取消的订单，用户可以重新下单
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            byVoucher.forEach((voucherId, orders) -> {
+                conn.incrBy(SECKILL_STOCK_KEY + voucherId, orders.size());
+                conn.sRem(SECKILL_ORDER_KEY + voucherId, orders.stream()
+                        .map(order -> order.getUserId().toString())
+                        .toArray(String[]::new));
+            });
+            return null;
+        });
+    }
+}
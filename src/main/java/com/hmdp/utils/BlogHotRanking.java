@@ -0,0 +1,262 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.util.BooleanUtil;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.hmdp.entity.Blog;
+import com.hmdp.mapper.BlogMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.hmdp.utils.RedisConstants.*;
+
+/**
+ * 热门博客排行榜：Redis ZSET 中保存最热的一批博客，分数按重力公式随时间衰减
+ * <pre>
+ *     分数 = (热度分 + 1) / (发布小时数 + 2) ^ GRAVITY
+ * </pre>
+ * 发布、点赞、评论时增量更新单篇博客的分数，定时任务按当前时间重新计算所有分数并淘汰排名靠后的博客，
+ * 查询热门博客只需要一次 ZREVRANGE，与博客表的大小无关
+ * @author Ghost
+ * @version 1.0
+ */
+@Slf4j
+@Component
+public class BlogHotRanking {
+
+    /**
+     * 重力因子，越大旧博客下沉越快
+     */
+    static final double GRAVITY = 1.8;
+    /**
+     * 排行榜最多保留的博客数
+     */
+    private static final int MAX_SIZE = 1000;
+    /**
+     * 初始化排行榜时每批查询的博客数
+     */
+    private static final int SEED_BATCH_SIZE = 1000;
+
+    public static final int LIKE_POINTS = 1;
+    public static final int COMMENT_POINTS = 2;
+
+    private static final DefaultRedisScript<Long> EVENT_SCRIPT;
+    private static final DefaultRedisScript<Long> RECOMPUTE_SCRIPT;
+
+    /**
+     * 初始化 Lua 脚本
+     */
+    static {
+        EVENT_SCRIPT = new DefaultRedisScript<>();
+        EVENT_SCRIPT.setLocation(new ClassPathResource("blog_hot_event.lua"));
+        EVENT_SCRIPT.setResultType(Long.class);
+        RECOMPUTE_SCRIPT = new DefaultRedisScript<>();
+        RECOMPUTE_SCRIPT.setLocation(new ClassPathResource("blog_hot_recompute.lua"));
+        RECOMPUTE_SCRIPT.setResultType(Long.class);
+    }
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private BlogMapper blogMapper;
+
+    /**
+     * 发布博客：加入排行榜
+     * @param blogId 博客id
+     */
+    public void onPublish(Long blogId) {
+        long now = nowSeconds();
+        String id = blogId.toString();
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            conn.hSet(BLOG_HOT_TIME_KEY, id, String.valueOf(now));
+            conn.hSet(BLOG_HOT_POINTS_KEY, id, "0");
+            conn.zAdd(BLOG_HOT_KEY, score(0, now, now), id);
+            return null;
+        });
+    }
+
+    /**
+     * 点赞或取消点赞
+     * @param blogId 博客id
+     * @param liked true 代表点赞，false 代表取消点赞
+     */
+    public void onLike(Long blogId, boolean liked) {
+        addPoints(blogId, liked ? LIKE_POINTS : -LIKE_POINTS);
+    }
+
+    /**
+     * 发表或删除评论
+     * @param blogId 博客id
+     * @param delta 评论数变化
+     */
+    public void onComment(Long blogId, int delta) {
+        addPoints(blogId, delta * COMMENT_POINTS);
+    }
+
+    /**
+     * 查询排行榜中的一段
+     * @param offset 起始排名，从 0 开始
+     * @param count 数量
+     * @return 博客id，按热度倒序；排行榜还没有从数据库初始化时返回 null
+     */
+    @SuppressWarnings("unchecked")
+    public List<Long> range(long offset, long count) {
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            conn.zRevRange(BLOG_HOT_KEY, offset, offset + count - 1);
+            conn.exists(BLOG_HOT_SEEDED_KEY);
+            return null;
+        });
+        // 初始化之前排行榜里只有新发布的博客，不能代表热门博客
+        if (!BooleanUtil.isTrue((Boolean) results.get(1))) {
+            return null;
+        }
+        Set<String> ids = (Set<String>) results.get(0);
+        if (ids == null || ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return ids.stream().map(Long::valueOf).collect(Collectors.toList());
+    }
+
+    /**
+     * 按当前时间重新计算所有分数，淘汰排名靠后的博客；排行榜不存在时从数据库初始化。
+     * 多个节点只有一个执行（与初始化共用一把锁）
+     */
+    public void recompute() {
+        Boolean locked = stringRedisTemplate.opsForValue().setIfAbsent(LOCK_BLOG_HOT_KEY, "1", 5, TimeUnit.MINUTES);
+        if (!BooleanUtil.isTrue(locked)) {
+            return;
+        }
+        try {
+            if (!BooleanUtil.isTrue(stringRedisTemplate.hasKey(BLOG_HOT_SEEDED_KEY))) {
+                seed();
+                return;
+            }
+            // 在 Lua 脚本中读取热度分并写回分数，不会覆盖重算期间热度事件更新的分数
+            stringRedisTemplate.execute(RECOMPUTE_SCRIPT,
+                    Arrays.asList(BLOG_HOT_POINTS_KEY, BLOG_HOT_TIME_KEY, BLOG_HOT_KEY),
+                    String.valueOf(nowSeconds()), String.valueOf(GRAVITY), String.valueOf(MAX_SIZE));
+        } finally {
+            stringRedisTemplate.delete(LOCK_BLOG_HOT_KEY);
+        }
+    }
+
+    /**
+     * 从数据库初始化排行榜：按 id 分批扫描博客表，保留分数最高的 MAX_SIZE 篇，调用方持有 LOCK_BLOG_HOT_KEY；
+     * 初始化之前通过热度事件加入的博客保留，下一次重新计算时统一排名
+     */
+    private void seed() {
+        long now = nowSeconds();
+        // 小顶堆，保留分数最高的 MAX_SIZE 篇
+        PriorityQueue<Entry> top = new PriorityQueue<>(Comparator.comparingDouble((Entry entry) -> entry.score));
+        long lastId = 0;
+        while (true) {
+            List<Blog> blogs = blogMapper.selectList(new QueryWrapper<Blog>()
+                    .select("id", "liked", "comments", "create_time")
+                    .gt("id", lastId).orderByAsc("id").last("LIMIT " + SEED_BATCH_SIZE));
+            for (Blog blog : blogs) {
+                long points = (long) nullToZero(blog.getLiked()) * LIKE_POINTS
+                        + (long) nullToZero(blog.getComments()) * COMMENT_POINTS;
+                long created = toSeconds(blog.getCreateTime(), now);
+                Entry entry = new Entry(blog.getId().toString(), created, points);
+                entry.score = score(points, created, now);
+                top.offer(entry);
+                if (top.size() > MAX_SIZE) {
+                    top.poll();
+                }
+            }
+            if (blogs.size() < SEED_BATCH_SIZE) {
+                break;
+            }
+            lastId = blogs.get(blogs.size() - 1).getId();
+        }
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            for (Entry entry : top) {
+                conn.hSet(BLOG_HOT_TIME_KEY, entry.id, String.valueOf(entry.created));
+                conn.hSet(BLOG_HOT_POINTS_KEY, entry.id, String.valueOf(entry.points));
+                conn.zAdd(BLOG_HOT_KEY, entry.score, entry.id);
+            }
+            conn.set(BLOG_HOT_SEEDED_KEY, "1");
+            return null;
+        });
+        log.info("初始化热门博客排行榜，共 {} 篇", top.size());
+    }
+
+    private void addPoints(Long blogId, int delta) {
+        String id = blogId.toString();
+        String missKey = BLOG_HOT_MISS_KEY + id;
+        List<String> keys = Arrays.asList(BLOG_HOT_POINTS_KEY, BLOG_HOT_TIME_KEY, BLOG_HOT_KEY, missKey);
+        String now = String.valueOf(nowSeconds());
+        Long result = stringRedisTemplate.execute(
+                EVENT_SCRIPT, keys, id, String.valueOf(delta), now, String.valueOf(GRAVITY));
+        if (result == null || result != -1) {
+            return;
+        }
+        // 博客不在排行榜中，并且最近没有查询过：查询发布时间和数据库中的热度分，分数足够高时重新加入，
+        // 没有加入时（包括博客不存在）写入标记，标记有效期内的热度事件不再查询数据库
+        Blog blog = blogMapper.selectOne(new QueryWrapper<Blog>()
+                .select("id", "liked", "comments", "create_time").eq("id", blogId));
+        if (blog == null) {
+            stringRedisTemplate.opsForValue().set(missKey, "1", BLOG_HOT_MISS_TTL, TimeUnit.SECONDS);
+            return;
+        }
+        long points = (long) nullToZero(blog.getLiked()) * LIKE_POINTS
+                + (long) nullToZero(blog.getComments()) * COMMENT_POINTS;
+        stringRedisTemplate.execute(
+                EVENT_SCRIPT, keys, id, String.valueOf(delta), now, String.valueOf(GRAVITY),
+                String.valueOf(toSeconds(blog.getCreateTime(), nowSeconds())), String.valueOf(points),
+                String.valueOf(MAX_SIZE), String.valueOf(BLOG_HOT_MISS_TTL));
+    }
+
+    /**
+     * 与 blog_hot_event.lua 中的公式保持一致
+     */
+    static double score(long points, long createdSeconds, long nowSeconds) {
+        double hours = Math.max(nowSeconds - createdSeconds, 0) / 3600.0;
+        return (Math.max(points, 0) + 1) / Math.pow(hours + 2, GRAVITY);
+    }
+
+    private static long toSeconds(LocalDateTime time, long defaultValue) {
+        return time == null ? defaultValue : time.atZone(ZoneId.systemDefault()).toEpochSecond();
+    }
+
+    private static int nullToZero(Integer value) {
+        return value == null ? 0 : value;
+    }
+
+    private static long nowSeconds() {
+        return TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+    }
+
+    private static class Entry {
+        final String id;
+        final long created;
+        final long points;
+        double score;
+
+        Entry(String id, long created, long points) {
+            this.id = id;
+            this.created = created;
+            this.points = points;
+        }
+    }
+}
@@ -5,14 +5,28 @@ import cn.hutool.core.util.StrUtil;
 import cn.hutool.json.JSONObject;
 import cn.hutool.json.JSONUtil;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static com.hmdp.utils.RedisConstants.*;
 
@@ -25,11 +39,28 @@ import static com.hmdp.utils.RedisConstants.*;
 @Slf4j
 public class CacheClient {
 
+    private static final DefaultRedisScript<Long> SET_IF_VERSION_SCRIPT;
+
+    /**
+     * 初始化 Lua 脚本
+     */
+    static {
+        SET_IF_VERSION_SCRIPT = new DefaultRedisScript<>();
+        SET_IF_VERSION_SCRIPT.setLocation(new ClassPathResource("cache_set_if_version.lua"));
+        SET_IF_VERSION_SCRIPT.setResultType(Long.class);
+    }
+
     private final StringRedisTemplate stringRedisTemplate;
+    private final LockMonitor lockMonitor;
 
+    /**
+     * 本节点正在重建的缓存对应的互斥锁，获取和释放可以在不同线程中进行（释放在缓存重建线程中）
+     */
+    private final Set<String> rebuilding = ConcurrentHashMap.newKeySet();
 
-    public CacheClient(StringRedisTemplate stringRedisTemplate) {
+    public CacheClient(StringRedisTemplate stringRedisTemplate, LockMonitor lockMonitor) {
         this.stringRedisTemplate = stringRedisTemplate;
+        this.lockMonitor = lockMonitor;
     }
 
     /**
@@ -43,6 +74,42 @@ public class CacheClient {
         stringRedisTemplate.opsForValue().set(key, JSONUtil.toJsonStr(value), time, unit);
     }
 
+    /**
+     * 数据修改后使缓存失效：版本号加一再删除缓存，修改之前开始的查询、刷新不会再把旧数据写回
+     * @param key 缓存 key
+     * @param versionKey 版本号 key
+     */
+    public void invalidate(String key, String versionKey) {
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            conn.incr(versionKey);
+            conn.expire(versionKey, TimeUnit.DAYS.toSeconds(CACHE_VERSION_TTL));
+            conn.del(key);
+            return null;
+        });
+    }
+
+    /**
+     * 版本号没有变化时才写入缓存，配合 {@link #invalidate} 使用
+     * @param key 缓存 key
+     * @param versionKey 版本号 key
+     * @param version 读取数据库之前查到的版本号，版本号 key 不存在时为 null
+     * @param value 值
+     * @param time 有效时长
+     * @param unit 时间单位
+     * @param onlyIfPresent 为 true 时只覆盖已经存在的缓存（刷新），缓存已被删除时不写入
+     * @return 是否写入
+     */
+    public boolean setIfVersion(String key, String versionKey, String version,
+                                Object value, Long time, TimeUnit unit, boolean onlyIfPresent) {
+        Long result = stringRedisTemplate.execute(SET_IF_VERSION_SCRIPT, Arrays.asList(key, versionKey),
+                value instanceof String ? (String) value : JSONUtil.toJsonStr(value),
+                String.valueOf(unit.toSeconds(time)),
+                version == null ? "0" : version,
+                onlyIfPresent ? "1" : "0");
+        return result != null && result == 1L;
+    }
+
     /**
      * 将 Java 对象存入 Redis 并设置 逻辑过期时间
      * @param key 键
@@ -106,6 +173,77 @@ public class CacheClient {
         return r;
     }
 
+    /**
+     * 批量查询，缓存空值解决缓存穿透：一次 MGET 查询缓存，未命中的 id 一次性查询数据库，再通过管道批量写回
+     * @param keyPrefix Redis 中数据 key 的前缀
+     * @param ids 数据库中的 id
+     * @param type 查询结果的类型
+     * @param dbFallback 批量查询数据库的函数，返回 id -> 数据，不存在的 id 不返回
+     * @param time 过期时间
+     * @param unit 时间单位
+     * @return id -> 数据，按 ids 的顺序排列，不存在的 id 不返回
+     * @param <R> 返回数据的类型
+     * @param <ID> 查询数据库的字段名
+     */
+    public <R, ID> Map<ID, R> queryBatchWithPassThrough(
+            String keyPrefix, Collection<ID> ids, Class<R> type,
+            Function<Collection<ID>, Map<ID, R>> dbFallback, Long time, TimeUnit unit) {
+        Map<ID, R> result = new LinkedHashMap<>();
+        if (ids == null || ids.isEmpty()) {
+            return result;
+        }
+        List<ID> idList = new ArrayList<>(new LinkedHashSet<>(ids));
+        // 1. 批量查询 Redis
+        List<String> jsons = stringRedisTemplate.opsForValue().multiGet(
+                idList.stream().map(id -> keyPrefix + id).collect(Collectors.toList()));
+
+        // 2. 命中的直接转换，命中空字符串的跳过，其余的记录下来查询数据库
+        List<ID> missing = new ArrayList<>();
+        for (int i = 0; i < idList.size(); i++) {
+            String json = jsons == null ? null : jsons.get(i);
+            if (StrUtil.isNotBlank(json)) {
+                result.put(idList.get(i), JSONUtil.toBean(json, type));
+            } else if (json == null) {
+                // 先占位，保证返回顺序与 ids 一致
+                result.put(idList.get(i), null);
+                missing.add(idList.get(i));
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        // 3. 未命中的 id 一次性查询数据库
+        Map<ID, R> loaded = dbFallback.apply(missing);
+
+        // 4. 通过管道批量写回 Redis，数据库中不存在的写入空值
+        long seconds = unit.toSeconds(time);
+        long nullSeconds = TimeUnit.MINUTES.toSeconds(CACHE_NULL_TTL);
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            for (ID id : missing) {
+                R r = loaded.get(id);
+                if (r == null) {
+                    conn.setEx(keyPrefix + id, nullSeconds, "");
+                } else {
+                    conn.setEx(keyPrefix + id, seconds, JSONUtil.toJsonStr(r));
+                }
+            }
+            return null;
+        });
+
+        // 5. 填充数据库查询结果，移除不存在的 id
+        for (ID id : missing) {
+            R r = loaded.get(id);
+            if (r == null) {
+                result.remove(id);
+            } else {
+                result.put(id, r);
+            }
+        }
+        return result;
+    }
+
     // 创建线程池，开启独立线程
     private static final ExecutorService CACHE_REBUILD_EXECUTOR = Executors.newFixedThreadPool(10);
 
@@ -137,8 +275,10 @@ public class CacheClient {
         // 4.2 过期，重建缓存
         // 5. 重建缓存
         // 5.1 获取互斥锁
-        String lockKey = LOCK_SHOP_KEY + id;
+        // 互斥锁与 SimpleRedisLock 的 Hash 结构锁使用不同的 key，避免类型冲突
+        String lockKey = LOCK_CACHE_REBUILD_KEY + key;
         boolean isLock = tryLock(lockKey);
+        long lockedAt = System.nanoTime();
         // 5.3 获取互斥锁成功，再次判断是否过期
         if(isLock) {
             json = stringRedisTemplate.opsForValue().get(key);
@@ -148,6 +288,7 @@ public class CacheClient {
             expireTime = redisData.getExpireTime();// 获取逻辑过期时间
             // 5.4 未过期就不用重建，直接返回
             if(expireTime.isAfter(LocalDateTime.now())){
+                unLock(lockKey, lockedAt);
                 return r;
             }
             // 5.5 已过期，开启独立线程，进行缓存重建
@@ -161,7 +302,7 @@ public class CacheClient {
                     throw new RuntimeException(e);
                 } finally {
                     // 释放互斥锁
-                    unLock(lockKey);
+                    unLock(lockKey, lockedAt);
                 }
             });
         }
@@ -175,15 +316,32 @@ public class CacheClient {
      * @return 成功：true 失败：false
      */
     private boolean tryLock(String key) {
+        // 本节点已经有线程在重建，直接失败，不再访问 Redis
+        if (!rebuilding.add(key)) {
+            return false;
+        }
+        long start = System.nanoTime();
         Boolean flag = stringRedisTemplate.opsForValue().setIfAbsent(key, "1", 10, TimeUnit.SECONDS);
-        return BooleanUtil.isTrue(flag);
+        boolean success = BooleanUtil.isTrue(flag);
+        lockMonitor.recordAcquire(key, System.nanoTime() - start, success);
+        if (!success) {
+            rebuilding.remove(key);
+        }
+        return success;
     }
 
     /**
      * 释放锁
      * @param key 互斥锁的键名
+     * @param lockedAt 获取锁的时间（纳秒），用于统计持有时长
      */
-    private void unLock(String key) {
-        stringRedisTemplate.delete(key);
+    private void unLock(String key, long lockedAt) {
+        // 锁已经不存在说明重建期间锁过期了
+        try {
+            Boolean deleted = stringRedisTemplate.delete(key);
+            lockMonitor.recordRelease(key, System.nanoTime() - lockedAt, BooleanUtil.isTrue(deleted));
+        } finally {
+            rebuilding.remove(key);
+        }
     }
 }
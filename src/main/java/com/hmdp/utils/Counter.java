@@ -0,0 +1,41 @@
+package com.hmdp.utils;
+
+import static com.hmdp.utils.RedisConstants.CACHE_USER_INFO_KEY;
+
+/**
+ * 由 {@link CounterService} 累计、批量写回数据库的计数字段
+ * @author Ghost
+ * @version 1.0
+ */
+public enum Counter {
+
+    BLOG_LIKED("blog:liked", "tb_blog", "id", "liked", false, null),
+    BLOG_COMMENTS("blog:comments", "tb_blog", "id", "comments", false, null),
+    USER_FANS("user:fans", "tb_user_info", "user_id", "fans", true, CACHE_USER_INFO_KEY),
+    USER_FOLLOWEE("user:followee", "tb_user_info", "user_id", "followee", true, CACHE_USER_INFO_KEY);
+
+    /**
+     * Redis 中待写回的增量 Hash 的名称
+     */
+    final String name;
+    final String table;
+    final String idColumn;
+    final String column;
+    /**
+     * 写回时记录不存在是否先创建（tb_user_info 在用户第一次修改详情前没有记录）
+     */
+    final boolean createMissing;
+    /**
+     * 写回后需要删除的缓存 key 前缀，没有为 null
+     */
+    final String cacheKeyPrefix;
+
+    Counter(String name, String table, String idColumn, String column, boolean createMissing, String cacheKeyPrefix) {
+        this.name = name;
+        this.table = table;
+        this.idColumn = idColumn;
+        this.column = column;
+        this.createMissing = createMissing;
+        this.cacheKeyPrefix = cacheKeyPrefix;
+    }
+}
@@ -0,0 +1,286 @@
+package com.hmdp.utils;
+
+import com.hmdp.mapper.CounterMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static com.hmdp.utils.RedisConstants.COUNTER_DELTA_KEY;
+import static com.hmdp.utils.RedisConstants.COUNTER_PROCESSING_KEY;
+
+/**
+ * 计数服务：点赞数、评论数、粉丝数等计数字段不再每次事件都更新数据库的同一行。
+ * <ol>
+ *     <li>事件发生时只累加到本节点的 LongAdder（内部分段，多线程累加不竞争）</li>
+ *     <li>每隔 hmdp.counter.merge-interval 毫秒把本节点的累计值合并到 Redis 的增量 Hash</li>
+ *     <li>每隔 hmdp.counter.flush-interval 毫秒把 Redis 中的增量 Hash 原子地改名为处理中的 Hash，
+ *     每 hmdp.counter.flush-batch-size 条一条 SQL 写回数据库，每批写回之后才从处理中的 Hash 删除</li>
+ * </ol>
+ * 写回失败或者进程崩溃时处理中的 Hash 保留在 Redis 中，下一次写回（包括启动后的第一次）优先重新写回，增量不会丢失；
+ * 崩溃发生在一批提交之后、删除之前时这一批会重复写回一次。
+ * 同一个计数同时只有一个节点写回（分布式锁）。
+ * 数据库中的计数最多落后 merge-interval + flush-interval；{@link #get} 会再加上还没有写回的增量
+ * @author Ghost
+ * @version 1.0
+ */
+@Slf4j
+@Component
+public class CounterService {
+
+    private static final DefaultRedisScript<List> FLUSH_SCRIPT;
+
+    /**
+     * 初始化 Lua 脚本
+     */
+    static {
+        FLUSH_SCRIPT = new DefaultRedisScript<>();
+        FLUSH_SCRIPT.setLocation(new ClassPathResource("counter_flush.lua"));
+        FLUSH_SCRIPT.setResultType(List.class);
+    }
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private CounterMapper counterMapper;
+
+    @Value("${hmdp.counter.flush-batch-size:500}")
+    private int flushBatchSize;
+
+    /**
+     * 写回数据库后的回调，参数为这一批写回的记录id
+     */
+    private final Map<Counter, List<Consumer<Collection<Long>>>> flushListeners = new EnumMap<>(Counter.class);
+
+    /**
+     * 正在累加的计数，合并时整体替换
+     */
+    private volatile Map<Counter, Map<Long, LongAdder>> current = newGeneration();
+    /**
+     * 上一次合并时替换下来的计数：替换瞬间可能还有线程在累加，下一次合并时再取一次
+     */
+    private Map<Counter, Map<Long, LongAdder>> retired = newGeneration();
+
+    /**
+     * 累加计数
+     * @param counter 计数字段
+     * @param id 记录id
+     * @param delta 增量
+     */
+    public void increment(Counter counter, Long id, long delta) {
+        if (delta == 0) {
+            return;
+        }
+        current.get(counter).computeIfAbsent(id, key -> new LongAdder()).add(delta);
+    }
+
+    /**
+     * 注册写回数据库后的回调，在写回线程中执行，耗时的操作应当自行异步执行
+     * @param counter 计数字段
+     * @param listener 参数为这一批写回的记录id
+     */
+    public synchronized void addFlushListener(Counter counter, Consumer<Collection<Long>> listener) {
+        flushListeners.computeIfAbsent(counter, key -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    /**
+     * 查询计数：数据库中的值加上还没有写回数据库的增量（Redis 中待写回、正在写回的增量和本节点还没有合并的累计值）
+     * @param counter 计数字段
+     * @param id 记录id
+     * @param persisted 数据库中的值
+     * @return 计数，不小于 0
+     */
+    public long get(Counter counter, Long id, Integer persisted) {
+        long value = persisted == null ? 0 : persisted;
+        List<Object> pending = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            conn.hGet(COUNTER_DELTA_KEY + counter.name, id.toString());
+            conn.hGet(COUNTER_PROCESSING_KEY + counter.name, id.toString());
+            return null;
+        });
+        for (Object delta : pending) {
+            if (delta != null) {
+                value += Long.parseLong(delta.toString());
+            }
+        }
+        LongAdder local = current.get(counter).get(id);
+        if (local != null) {
+            value += local.sum();
+        }
+        return Math.max(value, 0);
+    }
+
+    /**
+     * 把本节点的累计值合并到 Redis
+     */
+    @Scheduled(fixedDelayString = "${hmdp.counter.merge-interval:1000}")
+    public synchronized void merge() {
+        // 1. 替换正在累加的计数，取出上一代和这一代的累计值
+        Map<Counter, Map<Long, LongAdder>> late = retired;
+        retired = current;
+        current = newGeneration();
+        Map<Counter, Map<Long, Long>> deltas = new EnumMap<>(Counter.class);
+        for (Counter counter : Counter.values()) {
+            Map<Long, Long> values = new LinkedHashMap<>();
+            drain(late.get(counter), values);
+            drain(retired.get(counter), values);
+            if (!values.isEmpty()) {
+                deltas.put(counter, values);
+            }
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        // 2. 通过管道累加到 Redis 的增量 Hash
+        try {
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                deltas.forEach((counter, values) -> values.forEach((id, delta) ->
+                        conn.hIncrBy(COUNTER_DELTA_KEY + counter.name, id.toString(), delta)));
+                return null;
+            });
+        } catch (Exception e) {
+            // Redis 不可用，放回本节点，下次合并时重试
+            log.error("合并计数到 Redis 失败", e);
+            deltas.forEach((counter, values) -> values.forEach((id, delta) -> increment(counter, id, delta)));
+        }
+    }
+
+    /**
+     * 把 Redis 中的增量批量写回数据库
+     */
+    @Scheduled(fixedDelayString = "${hmdp.counter.flush-interval:5000}")
+    public void flush() {
+        for (Counter counter : Counter.values()) {
+            try {
+                flush(counter);
+            } catch (Exception e) {
+                log.error("写回计数 {} 失败", counter.name, e);
+            }
+        }
+    }
+
+    /**
+     * 停机前把本节点的累计值合并到 Redis，避免丢失
+     */
+    @PreDestroy
+    public void destroy() {
+        merge();
+        merge();
+    }
+
+    private void flush(Counter counter) throws InterruptedException {
+        // 1. 其它节点正在写回这个计数，跳过
+        ILock lock = new SimpleRedisLock("counter:" + counter.name, stringRedisTemplate);
+        if (!lock.lock(0, TimeUnit.MILLISECONDS)) {
+            return;
+        }
+        try {
+            flushLocked(counter);
+        } finally {
+            lock.unLock();
+        }
+    }
+
+    private void flushLocked(Counter counter) {
+        // 1. 原子地取出累计的增量，上一次没有写回完的增量优先
+        String processingKey = COUNTER_PROCESSING_KEY + counter.name;
+        @SuppressWarnings("unchecked")
+        List<String> fields = stringRedisTemplate.execute(FLUSH_SCRIPT,
+                Arrays.asList(COUNTER_DELTA_KEY + counter.name, processingKey));
+        if (fields == null || fields.isEmpty()) {
+            return;
+        }
+        List<Map<Long, Long>> batches = new ArrayList<>();
+        Map<Long, Long> batch = new LinkedHashMap<>();
+        List<String> zeros = new ArrayList<>();
+        for (int i = 0; i + 1 < fields.size(); i += 2) {
+            long delta = Long.parseLong(fields.get(i + 1));
+            if (delta == 0) {
+                zeros.add(fields.get(i));
+                continue;
+            }
+            batch.put(Long.valueOf(fields.get(i)), delta);
+            if (batch.size() == flushBatchSize) {
+                batches.add(batch);
+                batch = new LinkedHashMap<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        if (!zeros.isEmpty()) {
+            stringRedisTemplate.opsForHash().delete(processingKey, zeros.toArray());
+        }
+
+        // 2. 每批一条 SQL 写回数据库，写回之后从处理中的 Hash 删除这一批
+        for (int i = 0; i < batches.size(); i++) {
+            Map<Long, Long> deltas = batches.get(i);
+            try {
+                if (counter.createMissing) {
+                    counterMapper.insertIgnore(counter.table, counter.idColumn, deltas.keySet());
+                }
+                counterMapper.addBatch(counter.table, counter.idColumn, counter.column, deltas);
+            } catch (Exception e) {
+                // 写回失败，这一批和之后的增量留在处理中的 Hash，下次重试
+                log.error("写回计数 {} 失败，{} 批稍后重试", counter.name, batches.size() - i, e);
+                return;
+            }
+            stringRedisTemplate.opsForHash().delete(processingKey,
+                    deltas.keySet().stream().map(String::valueOf).toArray());
+            // 3. 删除缓存，通知回调
+            if (counter.cacheKeyPrefix != null) {
+                stringRedisTemplate.delete(deltas.keySet().stream()
+                        .map(id -> counter.cacheKeyPrefix + id).collect(Collectors.toList()));
+            }
+            for (Consumer<Collection<Long>> listener : flushListeners.getOrDefault(counter, Collections.emptyList())) {
+                try {
+                    listener.accept(deltas.keySet());
+                } catch (Exception e) {
+                    log.error("计数 {} 写回回调失败", counter.name, e);
+                }
+            }
+        }
+    }
+
+    private static void drain(Map<Long, LongAdder> adders, Map<Long, Long> values) {
+        adders.forEach((id, adder) -> {
+            long delta = adder.sumThenReset();
+            if (delta != 0) {
+                values.merge(id, delta, Long::sum);
+            }
+        });
+    }
+
+    private static Map<Counter, Map<Long, LongAdder>> newGeneration() {
+        Map<Counter, Map<Long, LongAdder>> generation = new EnumMap<>(Counter.class);
+        for (Counter counter : Counter.values()) {
+            generation.put(counter, new ConcurrentHashMap<>());
+        }
+        return generation;
+    }
+}
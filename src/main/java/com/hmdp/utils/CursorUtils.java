@@ -0,0 +1,65 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.util.StrUtil;
+import com.hmdp.dto.ScrollResult;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 滚动分页的游标：把上一页最后一条记录的排序字段编码成不透明的字符串，客户端原样传回
+ * @author Ghost
+ * @version 1.0
+ */
+public class CursorUtils {
+
+    private static final String SEPARATOR = ",";
+
+    /**
+     * 编码游标
+     * @param values 排序字段的值
+     * @return 游标
+     */
+    public static String encode(long... values) {
+        String plain = Arrays.stream(values).mapToObj(String::valueOf).collect(Collectors.joining(SEPARATOR));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(plain.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解码游标
+     * @param cursor 游标
+     * @return 排序字段的值；游标为空（第一页）时返回空数组，游标无效时返回 null
+     */
+    public static long[] decode(String cursor) {
+        if (StrUtil.isBlank(cursor)) {
+            return new long[0];
+        }
+        try {
+            String plain = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            return Arrays.stream(plain.split(SEPARATOR)).mapToLong(Long::parseLong).toArray();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 封装一页结果：查询时多取一条，多出的一条只用来判断是否还有下一页
+     * @param records 按排序字段查询的 size + 1 条记录
+     * @param size 每页条数
+     * @param key 记录的排序字段
+     * @return 一页记录和下一页的游标
+     */
+    public static <T> ScrollResult toScrollResult(List<T> records, int size, Function<T, long[]> key) {
+        ScrollResult result = new ScrollResult();
+        if (records.size() > size) {
+            records = records.subList(0, size);
+            result.setNextCursor(encode(key.apply(records.get(size - 1))));
+        }
+        result.setList(records);
+        return result;
+    }
+}
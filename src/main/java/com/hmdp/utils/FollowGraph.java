@@ -0,0 +1,324 @@
+package com.hmdp.utils;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.hmdp.entity.Follow;
+import com.hmdp.mapper.FollowMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongConsumer;
+
+/**
+ * 进程内的关注关系图：从 tb_follow 构建粉丝、关注两个方向的邻接表，邻接表是有序的 long[]，不装箱。
+ * 关注、取关事件通过 Redis 频道广播到所有节点增量更新，定时全量重建兜底丢失的事件。
+ * 粉丝数、遍历粉丝、求交集都只访问本地内存，图还没有构建好时调用方应退回数据库查询
+ * @author Ghost
+ * @version 1.0
+ */
+@Slf4j
+@Component
+public class FollowGraph implements MessageListener {
+
+    public static final String CHANNEL = "follow:channel";
+
+    /**
+     * 全量构建时每批查询的关注关系数
+     */
+    private static final int LOAD_BATCH_SIZE = 10000;
+
+    /**
+     * 全量重建的间隔（毫秒）
+     */
+    private static final long REBUILD_INTERVAL_MILLIS = 3600000L;
+
+    /**
+     * 全量重建的线程：扫描整张 tb_follow 耗时较长，不能占用定时任务的线程
+     * （ID 生成器续租、计数写回等定时任务共用同一个线程）
+     */
+    private final ExecutorService rebuildExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * 是否已经有重建任务在排队或执行
+     */
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    private final Object rebuildLock = new Object();
+
+    @Resource
+    private FollowMapper followMapper;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Value("${hmdp.follow-graph.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 当前使用的图，全量重建完成后整体替换
+     */
+    private volatile Graph graph;
+
+    /**
+     * 全量重建期间收到的事件，新图构建完成后重放，避免丢失
+     */
+    private List<long[]> replay;
+
+    private static class Graph {
+        /**
+         * 用户id -> 粉丝id
+         */
+        final Map<Long, SortedLongSet> followers = new ConcurrentHashMap<>();
+        /**
+         * 用户id -> 关注的人的id
+         */
+        final Map<Long, SortedLongSet> followees = new ConcurrentHashMap<>();
+
+        void apply(long userId, long followUserId, boolean follow) {
+            if (follow) {
+                followers.compute(followUserId, (key, set) -> (set == null ? SortedLongSet.EMPTY : set).add(userId));
+                followees.compute(userId, (key, set) -> (set == null ? SortedLongSet.EMPTY : set).add(followUserId));
+            } else {
+                followers.computeIfPresent(followUserId, (key, set) -> emptyToNull(set.remove(userId)));
+                followees.computeIfPresent(userId, (key, set) -> emptyToNull(set.remove(followUserId)));
+            }
+        }
+
+        private static SortedLongSet emptyToNull(SortedLongSet set) {
+            return set.size() == 0 ? null : set;
+        }
+    }
+
+    /**
+     * 图是否已经构建好
+     */
+    public boolean isReady() {
+        return graph != null;
+    }
+
+    /**
+     * 粉丝数
+     */
+    public int followerCount(long userId) {
+        SortedLongSet set = requireGraph().followers.get(userId);
+        return set == null ? 0 : set.size();
+    }
+
+    /**
+     * 是否关注
+     */
+    public boolean isFollowing(long userId, long followUserId) {
+        SortedLongSet set = requireGraph().followees.get(userId);
+        return set != null && set.contains(followUserId);
+    }
+
+    /**
+     * 按 id 从小到大遍历粉丝
+     */
+    public void forEachFollower(long userId, LongConsumer action) {
+        SortedLongSet set = requireGraph().followers.get(userId);
+        if (set != null) {
+            set.forEach(action);
+        }
+    }
+
+    /**
+     * 粉丝id，有序，调用方不能修改返回的数组
+     */
+    public long[] followers(long userId) {
+        SortedLongSet set = requireGraph().followers.get(userId);
+        return set == null ? new long[0] : set.toArray();
+    }
+
+    /**
+     * 关注的人的id，有序，调用方不能修改返回的数组
+     */
+    public long[] followees(long userId) {
+        SortedLongSet set = requireGraph().followees.get(userId);
+        return set == null ? new long[0] : set.toArray();
+    }
+
+    /**
+     * 两个用户的共同粉丝
+     */
+    public long[] commonFollowers(long userId, long otherUserId) {
+        return SortedLongSet.intersect(followers(userId), followers(otherUserId));
+    }
+
+    /**
+     * 两个用户的共同关注
+     */
+    public long[] commonFollowees(long userId, long otherUserId) {
+        return SortedLongSet.intersect(followees(userId), followees(otherUserId));
+    }
+
+    /**
+     * 广播关注、取关事件，所有节点（包括本节点）收到后更新各自的图
+     * @param userId 用户id
+     * @param followUserId 被关注的用户id
+     * @param follow true 代表关注，false 代表取关
+     */
+    public void publish(Long userId, Long followUserId, boolean follow) {
+        if (!enabled) {
+            return;
+        }
+        stringRedisTemplate.convertAndSend(CHANNEL, userId + ":" + followUserId + ":" + (follow ? 1 : 0));
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split(":");
+        long[] event = {Long.parseLong(parts[0]), Long.parseLong(parts[1]), Long.parseLong(parts[2])};
+        synchronized (this) {
+            if (replay != null) {
+                replay.add(event);
+            }
+            if (graph != null) {
+                graph.apply(event[0], event[1], event[2] == 1L);
+            }
+        }
+    }
+
+    /**
+     * 启动时立即开始第一次构建
+     */
+    @PostConstruct
+    private void init() {
+        scheduleRebuild();
+    }
+
+    @PreDestroy
+    private void destroy() {
+        rebuildExecutor.shutdownNow();
+    }
+
+    /**
+     * 定时把全量重建交给重建线程，上一次还没有完成时跳过
+     */
+    @Scheduled(initialDelay = REBUILD_INTERVAL_MILLIS, fixedDelay = REBUILD_INTERVAL_MILLIS)
+    public void scheduleRebuild() {
+        if (!enabled || !rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        rebuildExecutor.execute(() -> {
+            try {
+                rebuild();
+            } finally {
+                rebuilding.set(false);
+            }
+        });
+    }
+
+    /**
+     * 全量重建：按 id 分批扫描 tb_follow 构建新图，重放构建期间收到的事件，再替换当前的图
+     */
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        // 定时重建与手动重建互斥，同一时间只有一次全量构建
+        synchronized (rebuildLock) {
+            doRebuild();
+        }
+    }
+
+    private void doRebuild() {
+        synchronized (this) {
+            replay = new ArrayList<>();
+        }
+        try {
+            long begin = System.currentTimeMillis();
+            Graph next = load();
+            synchronized (this) {
+                // 事件是幂等的，构建时已经读到的事件重复应用没有影响
+                replay.forEach(event -> next.apply(event[0], event[1], event[2] == 1L));
+                replay = null;
+                graph = next;
+            }
+            log.info("关注关系图构建完成：{} 个用户，耗时 {} ms", next.followees.size(), System.currentTimeMillis() - begin);
+        } catch (Exception e) {
+            synchronized (this) {
+                replay = null;
+            }
+            log.error("构建关注关系图失败", e);
+        }
+    }
+
+    private Graph load() {
+        Map<Long, LongList> followers = new HashMap<>();
+        Map<Long, LongList> followees = new HashMap<>();
+        long lastId = 0;
+        while (true) {
+            List<Follow> follows = followMapper.selectList(new QueryWrapper<Follow>()
+                    .select("id", "user_id", "follow_user_id")
+                    .gt("id", lastId).orderByAsc("id").last("LIMIT " + LOAD_BATCH_SIZE));
+            for (Follow follow : follows) {
+                followers.computeIfAbsent(follow.getFollowUserId(), key -> new LongList()).add(follow.getUserId());
+                followees.computeIfAbsent(follow.getUserId(), key -> new LongList()).add(follow.getFollowUserId());
+            }
+            if (follows.size() < LOAD_BATCH_SIZE) {
+                break;
+            }
+            lastId = follows.get(follows.size() - 1).getId();
+        }
+        Graph next = new Graph();
+        followers.forEach((userId, list) -> next.followers.put(userId, SortedLongSet.of(list.toSortedArray())));
+        followees.forEach((userId, list) -> next.followees.put(userId, SortedLongSet.of(list.toSortedArray())));
+        return next;
+    }
+
+    private Graph requireGraph() {
+        Graph current = graph;
+        if (current == null) {
+            throw new IllegalStateException("关注关系图还没有构建好");
+        }
+        return current;
+    }
+
+    /**
+     * 构建时使用的可增长 long 数组
+     */
+    private static class LongList {
+        long[] values = new long[4];
+        int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size << 1);
+            }
+            values[size++] = value;
+        }
+
+        /**
+         * 排序并去重
+         */
+        long[] toSortedArray() {
+            long[] result = Arrays.copyOf(values, size);
+            Arrays.sort(result);
+            int n = 0;
+            for (int i = 0; i < result.length; i++) {
+                if (n == 0 || result[i] != result[n - 1]) {
+                    result[n++] = result[i];
+                }
+            }
+            return n == result.length ? result : Arrays.copyOf(result, n);
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.hmdp.utils;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * 使用 Redis 实现分布式锁业务接口
  * @author Ghost
@@ -14,8 +16,18 @@ public interface ILock {
      */
     boolean tryLock(Long timeoutSec);
 
+    /**
+     * 获取锁，锁被占用时挂起等待解锁通知，最多等待 waitTime；获取成功后由看门狗自动续期，直到释放锁
+     * @param waitTime 最长等待时间
+     * @param unit 时间单位
+     * @return true 代表获取锁成功，false 代表等待超时
+     * @throws InterruptedException 等待期间线程被中断
+     */
+    boolean lock(long waitTime, TimeUnit unit) throws InterruptedException;
+
     /**
      * 释放锁
+     * @return true 代表释放时锁仍由自己持有，false 代表锁已经过期或者被他人持有
      */
-    void unLock();
+    boolean unLock();
 }
@@ -0,0 +1,68 @@
+package com.hmdp.utils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 带监控的分布式锁：获取、释放锁时把耗时和结果记录到 {@link LockMonitor}，
+ * 与被包装的锁一样，一个对象只在一个线程中使用
+ * @author Ghost
+ * @version 1.0
+ */
+public class InstrumentedLock implements ILock {
+
+    private final String name;
+    private final ILock delegate;
+    private final LockMonitor lockMonitor;
+
+    /**
+     * 重入次数，最外层释放时才记录持有时长
+     */
+    private int holds;
+    /**
+     * 最外层获取锁成功的时间
+     */
+    private long acquiredAt;
+
+    public InstrumentedLock(String name, ILock delegate, LockMonitor lockMonitor) {
+        this.name = name;
+        this.delegate = delegate;
+        this.lockMonitor = lockMonitor;
+    }
+
+    @Override
+    public boolean tryLock(Long timeoutSec) {
+        long start = System.nanoTime();
+        boolean success = delegate.tryLock(timeoutSec);
+        onAcquire(start, success);
+        return success;
+    }
+
+    @Override
+    public boolean lock(long waitTime, TimeUnit unit) throws InterruptedException {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            success = delegate.lock(waitTime, unit);
+        } finally {
+            onAcquire(start, success);
+        }
+        return success;
+    }
+
+    @Override
+    public boolean unLock() {
+        boolean stillHeld = delegate.unLock();
+        if (holds > 0 && --holds == 0) {
+            lockMonitor.recordRelease(name, System.nanoTime() - acquiredAt, stillHeld);
+        }
+        return stillHeld;
+    }
+
+    private void onAcquire(long start, boolean success) {
+        long now = System.nanoTime();
+        lockMonitor.recordAcquire(name, now - start, success);
+        if (success && holds++ == 0) {
+            acquiredAt = now;
+        }
+    }
+}
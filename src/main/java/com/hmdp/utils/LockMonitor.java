@@ -0,0 +1,120 @@
+package com.hmdp.utils;
+
+import com.hmdp.dto.LockStatsDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * 分布式锁监控：记录获取锁耗时、持有时长、失败次数以及持有期间锁过期的次数，
+ * 按锁名称前缀（去掉最后一段业务 id）汇总，例如 lock:order:1010 记在 lock:order 下
+ * @author Ghost
+ * @version 1.0
+ */
+@Slf4j
+@Component
+public class LockMonitor {
+
+    /**
+     * 每个锁名称前缀的统计
+     */
+    private final Map<String, Stats> statsMap = new ConcurrentHashMap<>();
+
+    private static class Stats {
+        final LongAdder acquired = new LongAdder();
+        final LongAdder failed = new LongAdder();
+        final LongAdder acquireNanos = new LongAdder();
+        final LongAccumulator maxAcquireNanos = new LongAccumulator(Math::max, 0L);
+        final LongAdder released = new LongAdder();
+        final LongAdder holdNanos = new LongAdder();
+        final LongAccumulator maxHoldNanos = new LongAccumulator(Math::max, 0L);
+        final LongAdder leaseExpired = new LongAdder();
+    }
+
+    /**
+     * 为锁对象包装监控
+     * @param name 锁的 key，例如 lock:shop:1
+     * @param lock 被包装的锁
+     * @return 带监控的锁
+     */
+    public ILock wrap(String name, ILock lock) {
+        return new InstrumentedLock(name, lock, this);
+    }
+
+    /**
+     * 记录一次获取锁
+     * @param name 锁的 key
+     * @param nanos 获取锁的耗时
+     * @param success 是否获取成功
+     */
+    public void recordAcquire(String name, long nanos, boolean success) {
+        Stats stats = stats(name);
+        (success ? stats.acquired : stats.failed).increment();
+        stats.acquireNanos.add(nanos);
+        stats.maxAcquireNanos.accumulate(nanos);
+    }
+
+    /**
+     * 记录一次释放锁
+     * @param name 锁的 key
+     * @param holdNanos 持有锁的时长
+     * @param stillHeld 释放时锁是否仍由自己持有，false 代表持有期间锁已经过期
+     */
+    public void recordRelease(String name, long holdNanos, boolean stillHeld) {
+        Stats stats = stats(name);
+        stats.released.increment();
+        stats.holdNanos.add(holdNanos);
+        stats.maxHoldNanos.accumulate(holdNanos);
+        if (!stillHeld) {
+            stats.leaseExpired.increment();
+            log.warn("锁 {} 在持有期间已经过期，持有时长 {}ms", name, holdNanos / 1000000);
+        }
+    }
+
+    /**
+     * 查询所有锁的统计
+     * @return 按锁名称前缀汇总的统计
+     */
+    public List<LockStatsDTO> stats() {
+        return statsMap.entrySet().stream()
+                .map(entry -> toDTO(entry.getKey(), entry.getValue()))
+                .sorted((a, b) -> a.getPrefix().compareTo(b.getPrefix()))
+                .collect(Collectors.toList());
+    }
+
+    private Stats stats(String name) {
+        return statsMap.computeIfAbsent(prefixOf(name), k -> new Stats());
+    }
+
+    /**
+     * 去掉最后一段业务 id，避免每个 id 产生一组统计
+     */
+    private static String prefixOf(String name) {
+        int index = name.lastIndexOf(':');
+        return index > 0 ? name.substring(0, index) : name;
+    }
+
+    private static LockStatsDTO toDTO(String prefix, Stats stats) {
+        long acquired = stats.acquired.sum();
+        long failed = stats.failed.sum();
+        long attempts = acquired + failed;
+        long released = stats.released.sum();
+        LockStatsDTO dto = new LockStatsDTO();
+        dto.setPrefix(prefix);
+        dto.setAcquired(acquired);
+        dto.setFailed(failed);
+        dto.setFailureRate(attempts == 0 ? 0D : (double) failed / attempts);
+        dto.setAvgAcquireMillis(attempts == 0 ? 0D : stats.acquireNanos.sum() / 1e6 / attempts);
+        dto.setMaxAcquireMillis(stats.maxAcquireNanos.get() / 1e6);
+        dto.setAvgHoldMillis(released == 0 ? 0D : stats.holdNanos.sum() / 1e6 / released);
+        dto.setMaxHoldMillis(stats.maxHoldNanos.get() / 1e6);
+        dto.setLeaseExpired(stats.leaseExpired.sum());
+        return dto;
+    }
+}
@@ -0,0 +1,184 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.lang.UUID;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.jwt.JWT;
+import cn.hutool.jwt.signers.JWTSigner;
+import cn.hutool.jwt.signers.JWTSignerUtil;
+import com.hmdp.dto.UserDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.utils.RedisConstants.LOGIN_REVOKED_KEY;
+import static com.hmdp.utils.RedisConstants.LOGIN_USER_TTL;
+
+/**
+ * 登录 token 管理：
+ * <ul>
+ *     <li>签名 token（hmdp.token.signed=true 时签发）：HMAC-SHA256 签名的 JWT，携带 UserDTO，校验时不访问 Redis</li>
+ *     <li>注销：已注销的 token 标识保存在 Redis 的 ZSET 中，各节点定时同步到本地，校验时只查本地集合</li>
+ * </ul>
+ * 配置了 hmdp.token.secret 就会校验签名 token，关闭签名模式后已签发的 token 仍然有效
+ * @author Ghost
+ * @version 1.0
+ */
+@Slf4j
+@Component
+public class LoginTokenManager {
+
+    /**
+     * 普通 token 注销记录的保留时间，超过各节点本地 token 缓存的有效期即可
+     */
+    private static final long HASH_TOKEN_REVOKE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Value("${hmdp.token.signed:false}")
+    private boolean signed;
+
+    @Value("${hmdp.token.secret:}")
+    private String secret;
+
+    private JWTSigner signer;
+
+    /**
+     * 本地的注销 token 集合，定时从 Redis 全量同步，本节点注销的 token 立即加入
+     */
+    private volatile Set<String> revoked = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    private void init() {
+        if (StrUtil.isNotBlank(secret)) {
+            signer = JWTSignerUtil.hs256(secret.getBytes(StandardCharsets.UTF_8));
+        } else if (signed) {
+            throw new IllegalStateException("开启签名 token 需要配置 hmdp.token.secret");
+        }
+        syncRevoked();
+    }
+
+    /**
+     * 是否签发签名 token
+     */
+    public boolean isSigned() {
+        return signed;
+    }
+
+    /**
+     * 签名 token 由三段组成，普通 token 是不带分隔符的 UUID
+     */
+    public boolean isSignedToken(String token) {
+        return token.indexOf('.') > 0;
+    }
+
+    /**
+     * 签发签名 token
+     * @param userDTO 登录用户
+     * @return token
+     */
+    public String createSignedToken(UserDTO userDTO) {
+        Date now = new Date();
+        return JWT.create()
+                .setJWTId(UUID.fastUUID().toString(true))
+                .setIssuedAt(now)
+                .setExpiresAt(new Date(now.getTime() + TimeUnit.MINUTES.toMillis(LOGIN_USER_TTL)))
+                .setPayload("id", userDTO.getId())
+                .setPayload("nickName", userDTO.getNickName())
+                .setPayload("icon", userDTO.getIcon())
+                .sign(signer);
+    }
+
+    /**
+     * 校验签名 token：签名、有效期、是否已注销，全部在本地完成
+     * @param token
+     * @return 用户信息，token 无效时返回 null
+     */
+    public UserDTO parseSignedToken(String token) {
+        if (signer == null) {
+            return null;
+        }
+        JWT jwt;
+        try {
+            jwt = JWT.of(token).setSigner(signer);
+            if (!jwt.validate(0)) {
+                return null;
+            }
+        } catch (Exception e) {
+            // 格式错误的 token
+            return null;
+        }
+        if (isRevoked((String) jwt.getPayload(JWT.JWT_ID))) {
+            return null;
+        }
+        UserDTO userDTO = new UserDTO();
+        userDTO.setId(Long.valueOf(jwt.getPayload("id").toString()));
+        userDTO.setNickName((String) jwt.getPayload("nickName"));
+        userDTO.setIcon((String) jwt.getPayload("icon"));
+        return userDTO;
+    }
+
+    /**
+     * 判断 token 是否已经注销
+     * @param tokenId 签名 token 的 jti，普通 token 本身
+     */
+    public boolean isRevoked(String tokenId) {
+        return tokenId != null && revoked.contains(tokenId);
+    }
+
+    /**
+     * 注销 token：记录到 Redis 中，保留到 token 原本的过期时间
+     * @param token
+     */
+    public void revoke(String token) {
+        String tokenId = token;
+        long expireAt = System.currentTimeMillis() + HASH_TOKEN_REVOKE_MILLIS;
+        if (isSignedToken(token)) {
+            JWT jwt;
+            try {
+                jwt = JWT.of(token);
+            } catch (Exception e) {
+                return;
+            }
+            tokenId = (String) jwt.getPayload(JWT.JWT_ID);
+            Object expiresAt = jwt.getPayload(JWT.EXPIRES_AT);
+            if (tokenId == null || expiresAt == null) {
+                return;
+            }
+            expireAt = TimeUnit.SECONDS.toMillis(Long.parseLong(expiresAt.toString()));
+        }
+        stringRedisTemplate.opsForZSet().add(LOGIN_REVOKED_KEY, tokenId, expireAt);
+        revoked.add(tokenId);
+    }
+
+    /**
+     * 定时清理已过期的注销记录，并同步到本地
+     */
+    @Scheduled(fixedDelay = 5000L)
+    public void syncRevoked() {
+        try {
+            long now = System.currentTimeMillis();
+            stringRedisTemplate.opsForZSet().removeRangeByScore(LOGIN_REVOKED_KEY, Double.NEGATIVE_INFINITY, now);
+            Set<String> ids = stringRedisTemplate.opsForZSet()
+                    .rangeByScore(LOGIN_REVOKED_KEY, now, Double.POSITIVE_INFINITY);
+            Set<String> latest = ConcurrentHashMap.newKeySet();
+            if (ids != null) {
+                latest.addAll(ids);
+            }
+            revoked = latest;
+        } catch (Exception e) {
+            // 同步失败时继续使用上一次的集合
+            log.error("同步注销 token 失败", e);
+        }
+    }
+}
@@ -5,22 +5,163 @@ public class RedisConstants {
     public static final Long LOGIN_CODE_TTL = 2L;
     public static final String LOGIN_USER_KEY = "login:token:";
     public static final Long LOGIN_USER_TTL = 36000L;
+    /**
+     * token 剩余有效期低于该值（分钟）时才续期，避免每个请求都写 Redis
+     */
+    public static final Long LOGIN_USER_REFRESH_TTL = LOGIN_USER_TTL * 9 / 10;
+    /**
+     * 已注销的 token：member 为 token 标识，score 为 token 原本的过期时间戳（毫秒），过期后清理
+     */
+    public static final String LOGIN_REVOKED_KEY = "login:revoked";
     /**
      * 商铺类型查询 key 前缀
      */
     public static final String SHOP_TYPE_KEY = "shopTypeList";
 
     public static final Long CACHE_NULL_TTL = 2L;
+    /**
+     * 缓存版本号的有效期（天），远大于一次查询数据库的耗时即可
+     */
+    public static final Long CACHE_VERSION_TTL = 1L;
 
     public static final Long CACHE_SHOP_TTL = 30L;
     public static final String CACHE_SHOP_KEY = "cache:shop:";
 
+    /**
+     * 用户基本信息（昵称、头像）缓存 key 前缀
+     */
+    public static final String CACHE_USER_KEY = "cache:user:";
+    /**
+     * 用户详情缓存 key 前缀
+     */
+    public static final String CACHE_USER_INFO_KEY = "cache:user:info:";
+    public static final Long CACHE_USER_TTL = 30L;
+
+    /**
+     * 热门博客分页结果缓存 key 前缀，只缓存与登录用户无关的数据
+     */
+    public static final String CACHE_BLOG_HOT_KEY = "cache:blog:hot:";
+    public static final Long CACHE_BLOG_HOT_TTL = 10L;
+    /**
+     * 博客详情缓存 key 前缀：博客和作者一起缓存，不包含当前用户是否点赞
+     */
+    public static final String CACHE_BLOG_KEY = "cache:blog:";
+    public static final Long CACHE_BLOG_TTL = 30L;
+    /**
+     * 博客详情缓存的版本号，修改博客时加一，查询、刷新时版本号变化则不写回
+     */
+    public static final String CACHE_BLOG_VERSION_KEY = "cache:blog:version:";
+    /**
+     * 博客第一页评论缓存 key 前缀，发表评论时删除（见 CACHE_BLOG_COMMENTS_VERSION_KEY）
+     */
+    public static final String CACHE_BLOG_COMMENTS_KEY = "cache:blog:comments:";
+    public static final Long CACHE_BLOG_COMMENTS_TTL = 5L;
+    /**
+     * 博客第一页评论缓存的版本号，发表评论时加一
+     */
+    public static final String CACHE_BLOG_COMMENTS_VERSION_KEY = "cache:blog:comments:version:";
+
+    /**
+     * 商铺缓存重建的互斥锁（SimpleRedisLock，Hash 结构），ShopServiceImpl#queryWithMutex 使用
+     */
     public static final String LOCK_SHOP_KEY = "lock:shop:";
     public static final Long LOCK_SHOP_TTL = 10L;
+    /**
+     * 逻辑过期缓存重建的互斥锁（SET NX 字符串）前缀，后接缓存 key；与 SimpleRedisLock 的 key 不重叠
+     */
+    public static final String LOCK_CACHE_REBUILD_KEY = "lock:rebuild:";
 
     public static final String SECKILL_STOCK_KEY = "seckill:stock:";
+    /**
+     * 秒杀券已下单用户集合 key 前缀
+     */
+    public static final String SECKILL_ORDER_KEY = "seckill:order:";
+    /**
+     * 秒杀订单异步处理结果 key 前缀
+     */
+    public static final String SECKILL_RESULT_KEY = "seckill:result:";
+    public static final Long SECKILL_RESULT_TTL = 10L;
+    /**
+     * 待支付订单的到期时间，score 为到期时间戳（毫秒）
+     */
+    public static final String ORDER_EXPIRE_KEY = "order:expire";
+    public static final Long ORDER_PAY_TTL = 15L;
+    /**
+     * id 生成器 workerId 租约 key 前缀
+     */
+    public static final String ID_WORKER_KEY = "id:worker:";
+    public static final Long ID_WORKER_TTL = 60L;
+
+    /**
+     * 幂等请求记录 key 前缀
+     */
+    public static final String IDEMPOTENCY_KEY = "idempotency:";
+    /**
+     * 滑动窗口限流 key 前缀
+     */
+    public static final String RATE_LIMIT_KEY = "rate:limit:";
+    /**
+     * 待写回数据库的计数增量：key 后缀为计数名称，field 为记录 id，value 为增量
+     */
+    public static final String COUNTER_DELTA_KEY = "counter:delta:";
+    /**
+     * 正在写回数据库的计数增量，结构与 COUNTER_DELTA_KEY 相同，写回数据库之后才删除
+     */
+    public static final String COUNTER_PROCESSING_KEY = "counter:processing:";
+
     public static final String BLOG_LIKED_KEY = "blog:liked:";
+    /**
+     * 热门博客排行榜，score 为按重力公式计算的热度
+     */
+    public static final String BLOG_HOT_KEY = "blog:hot";
+    /**
+     * 排行榜中博客的热度分（点赞 1 分，评论 2 分）
+     */
+    public static final String BLOG_HOT_POINTS_KEY = "blog:hot:points";
+    /**
+     * 排行榜中博客的发布时间（秒）
+     */
+    public static final String BLOG_HOT_TIME_KEY = "blog:hot:time";
+    /**
+     * 排行榜已经从数据库初始化的标记，不存在时（首次启动、Redis 数据丢失）重新初始化
+     */
+    public static final String BLOG_HOT_SEEDED_KEY = "blog:hot:seeded";
+    /**
+     * 博客最近一次热度事件查询数据库后没有加入排行榜（分数不够或者博客不存在），
+     * 有效期内的热度事件不再查询数据库，等待定时重算
+     */
+    public static final String BLOG_HOT_MISS_KEY = "blog:hot:miss:";
+    public static final Long BLOG_HOT_MISS_TTL = 60L;
+    /**
+     * 排行榜初始化、定时重算的互斥锁，多个节点只有一个执行
+     */
+    public static final String LOCK_BLOG_HOT_KEY = "lock:blog:hot";
+    /**
+     * 收件箱：普通作者发布博客时推送到每个粉丝的收件箱，score 为发布时间（毫秒）
+     */
     public static final String FEED_KEY = "feed:";
+    /**
+     * 发件箱：粉丝数超过阈值的作者（大V）只写自己的发件箱，粉丝读取时再合并
+     */
+    public static final String FEED_OUTBOX_KEY = "feed:outbox:";
+    /**
+     * 拥有发件箱的作者id
+     */
+    public static final String FEED_BIG_V_KEY = "feed:bigv";
+    /**
+     * 用户关注的人，与 tb_follow 同步；集合中固定有一个占位成员，用来区分“没有关注任何人”和“还没有加载”
+     */
+    public static final String FOLLOWS_KEY = "follows:";
+    public static final String FOLLOWS_PLACEHOLDER = "0";
+    public static final Long FOLLOWS_TTL = 7L;
+    /**
+     * 关注集合的版本号，每次关注、取关加一，从数据库加载期间版本号变化时放弃写入
+     */
+    public static final String FOLLOWS_VERSION_KEY = "follows:version:";
+    /**
+     * 从数据库加载关注集合时版本号变化的最大重试次数
+     */
+    public static final int FOLLOWS_LOAD_RETRIES = 3;
     public static final String SHOP_GEO_KEY = "shop:geo:";
     public static final String USER_SIGN_KEY = "sign:";
 }
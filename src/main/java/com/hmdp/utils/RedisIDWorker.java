@@ -1,27 +1,55 @@
 package com.hmdp.utils;
 
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Resource;
-import java.text.DateFormat;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 通过 Redis 生成全局唯一 id
  * @author Ghost
  * @version 1.0
  */
+@Slf4j
 @Component
 public class RedisIDWorker {
 
     @Resource
     private StringRedisTemplate stringRedisTemplate;
 
-    private static final long BEGIN_TIMESTAMP = 1672531200L;
-    private static final long COUNT_BITS = 31L;
+    static final long BEGIN_TIMESTAMP = 1672531200L;
+    static final long COUNT_BITS = 31L;
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy:MM:dd");
+
+    /**
+     * 号段模式每次从 Redis 预留的序列号数量
+     */
+    private static final long SEGMENT_STEP = 1000L;
+    /**
+     * 当前号段剩余的序列号降到该值时，异步预取下一个号段
+     */
+    private static final long SEGMENT_LOW_WATER = SEGMENT_STEP / 5;
+
+    /**
+     * 预取号段的线程池
+     */
+    private static final ExecutorService SEGMENT_PREFETCH_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    /**
+     * 每个业务前缀当天使用的号段缓冲
+     */
+    private final Map<String, SegmentBuffer> segmentBuffers = new ConcurrentHashMap<>();
 
     /**
      * 生成全局唯一 id
@@ -36,11 +64,111 @@ public class RedisIDWorker {
 
         // 2. 生成序列号
         // 2.1 获取当前日期，精确到天 作为前缀
-        String date = now.format(DateTimeFormatter.ofPattern("yyyy:MM:dd"));
+        String date = now.format(DATE_FORMATTER);
         // 2.2 自增长
         long count = stringRedisTemplate.opsForValue().increment("icr:" + keyPrefix + ":"+ date);
 
         // 3. 拼接并返回
         return timeStamp << COUNT_BITS | count;
     }
+
+    /**
+     * 号段模式生成全局唯一 id：每次用 INCRBY 从 Redis 预留一段序列号，在本地通过原子计数器发放，
+     * 与 {@link #nextId(String)} 共用同一个按天计数的 key，两种方式生成的 id 不会重复
+     * @param keyPrefix 业务前缀
+     * @return
+     */
+    public long nextIdBySegment(String keyPrefix) {
+        // 1. 生成时间戳
+        LocalDateTime now = LocalDateTime.now();
+        long timeStamp = now.toEpochSecond(ZoneOffset.UTC) - BEGIN_TIMESTAMP;
+
+        // 2. 从当天的号段中取序列号，跨天时切换到新的 key
+        String key = "icr:" + keyPrefix + ":" + now.format(DATE_FORMATTER);
+        SegmentBuffer buffer = segmentBuffers.get(keyPrefix);
+        if (buffer == null || !buffer.key.equals(key)) {
+            buffer = segmentBuffers.compute(keyPrefix,
+                    (prefix, old) -> old != null && old.key.equals(key) ? old : new SegmentBuffer(key));
+        }
+        long count = buffer.next();
+
+        // 3. 拼接并返回
+        return timeStamp << COUNT_BITS | count;
+    }
+
+    /**
+     * 号段：[cursor, max] 之间的序列号
+     */
+    private static class Segment {
+        private final AtomicLong cursor;
+        private final long max;
+
+        Segment(long min, long max) {
+            this.cursor = new AtomicLong(min);
+            this.max = max;
+        }
+    }
+
+    /**
+     * 号段缓冲：当前号段发放完之前预取好下一个号段，发放序列号时无锁，只有切换号段时加锁
+     */
+    private class SegmentBuffer {
+        private final String key;
+        private volatile Segment current = new Segment(1L, 0L);
+        private CompletableFuture<Segment> prefetched;
+
+        SegmentBuffer(String key) {
+            this.key = key;
+        }
+
+        long next() {
+            while (true) {
+                Segment segment = current;
+                long value = segment.cursor.getAndIncrement();
+                if (value <= segment.max) {
+                    // 每个序列号只会发放一次，恰好发到低水位的线程负责触发预取
+                    if (segment.max - value == SEGMENT_LOW_WATER) {
+                        prefetch();
+                    }
+                    return value;
+                }
+                // 当前号段已发放完，切换到下一个号段
+                switchSegment(segment);
+            }
+        }
+
+        private synchronized void prefetch() {
+            if (prefetched == null) {
+                prefetched = CompletableFuture.supplyAsync(this::allocate, SEGMENT_PREFETCH_EXECUTOR);
+            }
+        }
+
+        private synchronized void switchSegment(Segment exhausted) {
+            if (current != exhausted) {
+                // 其它线程已经切换过
+                return;
+            }
+            Segment segment = null;
+            if (prefetched != null) {
+                try {
+                    segment = prefetched.join();
+                } catch (CompletionException e) {
+                    log.error("预取号段失败，key：{}", key, e);
+                }
+                prefetched = null;
+            }
+            current = segment != null ? segment : allocate();
+        }
+
+        /**
+         * 从 Redis 预留一个号段，INCRBY 保证号段单调递增且互不重叠
+         */
+        private Segment allocate() {
+            Long max = stringRedisTemplate.opsForValue().increment(key, SEGMENT_STEP);
+            if (max == null) {
+                throw new IllegalStateException("分配号段失败，key：" + key);
+            }
+            return new Segment(max - SEGMENT_STEP + 1, max);
+        }
+    }
 }
@@ -0,0 +1,69 @@
+package com.hmdp.utils;
+
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 分布式锁解锁通知：订阅 lock:channel:* 频道，锁释放时唤醒本节点上等待该锁的线程，
+ * 等待的线程不再轮询 Redis
+ * @author Ghost
+ * @version 1.0
+ */
+@Component
+public class RedisLockNotifier implements MessageListener {
+
+    public static final String CHANNEL_PREFIX = "lock:channel:";
+    public static final String CHANNEL_PATTERN = CHANNEL_PREFIX + "*";
+
+    /**
+     * 每把锁的等待者，key 为锁名称
+     */
+    private final Map<String, Waiters> waiters = new ConcurrentHashMap<>();
+
+    /**
+     * 等待同一把锁的线程共用一个信号量
+     */
+    static class Waiters {
+        final Semaphore latch = new Semaphore(0);
+        final AtomicInteger count = new AtomicInteger();
+    }
+
+    /**
+     * 登记等待某把锁
+     * @param name 锁名称
+     * @return 等待者，解锁时释放其信号量
+     */
+    Waiters subscribe(String name) {
+        return waiters.compute(name, (key, entry) -> {
+            if (entry == null) {
+                entry = new Waiters();
+            }
+            entry.count.incrementAndGet();
+            return entry;
+        });
+    }
+
+    /**
+     * 取消登记，最后一个等待者离开时移除
+     */
+    void unsubscribe(String name) {
+        waiters.computeIfPresent(name, (key, entry) -> entry.count.decrementAndGet() == 0 ? null : entry);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String channel = new String(message.getChannel(), StandardCharsets.UTF_8);
+        Waiters entry = waiters.get(channel.substring(CHANNEL_PREFIX.length()));
+        if (entry != null) {
+            // 唤醒所有等待者重新竞争，没抢到的继续等待
+            entry.latch.release(Math.max(entry.count.get(), 1));
+        }
+    }
+}
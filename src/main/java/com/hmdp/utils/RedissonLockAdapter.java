@@ -0,0 +1,46 @@
+package com.hmdp.utils;
+
+import org.redisson.api.RLock;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 将 Redisson 的 {@link RLock} 适配为 {@link ILock}，以便统一包装监控
+ * @author Ghost
+ * @version 1.0
+ */
+public class RedissonLockAdapter implements ILock {
+
+    private final RLock lock;
+
+    public RedissonLockAdapter(RLock lock) {
+        this.lock = lock;
+    }
+
+    @Override
+    public boolean tryLock(Long timeoutSec) {
+        try {
+            return lock.tryLock(0, timeoutSec, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @Override
+    public boolean lock(long waitTime, TimeUnit unit) throws InterruptedException {
+        // 不指定有效期，由 Redisson 看门狗续期
+        return lock.tryLock(waitTime, unit);
+    }
+
+    @Override
+    public boolean unLock() {
+        try {
+            lock.unlock();
+            return true;
+        } catch (IllegalMonitorStateException e) {
+            // 锁已经过期或者被他人持有
+            return false;
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.util.StrUtil;
+import com.hmdp.dto.AdmissionResultDTO;
+import com.hmdp.dto.AdmissionStatsDTO;
+import com.hmdp.entity.SeckillVoucher;
+import com.hmdp.service.ISeckillVoucherService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.hmdp.utils.RedisConstants.SECKILL_STOCK_KEY;
+
+/**
+ * 秒杀准入控制：每张秒杀券一个令牌桶，放行速率根据剩余库存动态调整，
+ * 拿不到令牌的请求进入有界等待室短暂排队，等待室满或需要等待太久则快速失败，并返回排队位置和建议的重试间隔，
+ * 避免远超库存的流量去争抢分布式锁和数据库连接。
+ * 排队会占用 Tomcat 的请求线程，所有秒杀券共用一个远小于线程池大小的等待室，热门秒杀券不会拖垮其它接口
+ * @author Ghost
+ * @version 1.0
+ */
+@Slf4j
+@Component
+public class SeckillAdmissionGate {
+
+    /**
+     * 每件剩余库存每秒放行的请求数（留出重复下单、校验失败等请求的余量）
+     */
+    private static final int RATE_PER_STOCK = 2;
+    private static final int MIN_RATE = 10;
+    private static final int MAX_RATE = 2000;
+
+    /**
+     * 等待室容量（所有秒杀券合计），远小于 Tomcat 默认的 200 个工作线程，超过该人数的请求直接拒绝
+     */
+    private static final int MAX_WAITING = 32;
+    /**
+     * 排队的最长等待时间，需要等待更久的请求直接拒绝，由客户端按建议的间隔重试
+     */
+    private static final long MAX_WAIT_MILLIS = 100L;
+    /**
+     * 没有请求的秒杀券保留令牌桶的时间
+     */
+    private static final long IDLE_EVICT_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    /**
+     * 根据剩余库存重新计算放行速率的间隔
+     */
+    private static final long RESIZE_INTERVAL_MILLIS = 1000L;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private ISeckillVoucherService seckillVoucherService;
+
+    private final Map<Long, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * 所有秒杀券在等待室中排队的请求数
+     */
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    /**
+     * 申请准入
+     * @param voucherId 优惠券id
+     * @return 准入结果，没有放行时附带排队位置和建议的重试间隔
+     */
+    public AdmissionResultDTO tryAdmit(Long voucherId) {
+        TokenBucket bucket = buckets.computeIfAbsent(voucherId, this::createBucket);
+        bucket.lastAccessMillis = System.currentTimeMillis();
+        resizeIfNecessary(voucherId, bucket);
+
+        // 1. 库存已经抢完，直接拒绝
+        if (bucket.stock <= 0) {
+            bucket.rejected.increment();
+            return AdmissionResultDTO.soldOut();
+        }
+
+        // 2. 桶里有令牌，直接放行
+        if (bucket.reserve(System.nanoTime(), 0L) == 0L) {
+            bucket.admitted.increment();
+            return AdmissionResultDTO.admit();
+        }
+
+        // 3. 没有令牌，进入等待室
+        if (waiting.incrementAndGet() > MAX_WAITING) {
+            // 3.1 等待室已满，快速失败
+            waiting.decrementAndGet();
+            return reject(bucket);
+        }
+        bucket.waiting.incrementAndGet();
+        try {
+            // 3.2 预约一个令牌，最多等待 MAX_WAIT_MILLIS，需要等待更久时快速失败
+            long waitNanos = bucket.reserve(System.nanoTime(), TimeUnit.MILLISECONDS.toNanos(MAX_WAIT_MILLIS));
+            if (waitNanos < 0) {
+                return reject(bucket);
+            }
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+            bucket.admitted.increment();
+            return AdmissionResultDTO.admit();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return reject(bucket);
+        } finally {
+            bucket.waiting.decrementAndGet();
+            waiting.decrementAndGet();
+        }
+    }
+
+    /**
+     * 淘汰已经结束或者长时间没有请求的秒杀券的令牌桶
+     */
+    @Scheduled(fixedDelay = 60000L)
+    public void evictBuckets() {
+        LocalDateTime now = LocalDateTime.now();
+        long idleBefore = System.currentTimeMillis() - IDLE_EVICT_MILLIS;
+        buckets.entrySet().removeIf(entry -> {
+            TokenBucket bucket = entry.getValue();
+            return (bucket.endTime != null && bucket.endTime.isBefore(now)) || bucket.lastAccessMillis < idleBefore;
+        });
+    }
+
+    /**
+     * 拒绝请求，按令牌桶中已经预约的令牌估算排队位置和重试间隔
+     */
+    private AdmissionResultDTO reject(TokenBucket bucket) {
+        bucket.rejected.increment();
+        long backlogNanos = bucket.backlogNanos(System.nanoTime());
+        long position = (long) Math.ceil(backlogNanos / bucket.intervalNanos);
+        long retryAfterMillis = Math.max(TimeUnit.NANOSECONDS.toMillis(backlogNanos), MAX_WAIT_MILLIS);
+        return new AdmissionResultDTO(false, position, retryAfterMillis);
+    }
+
+    /**
+     * 查询某张秒杀券的实时准入统计
+     * @param voucherId 优惠券id
+     * @return 统计数据，该券还没有请求时返回 null
+     */
+    public AdmissionStatsDTO stats(Long voucherId) {
+        TokenBucket bucket = buckets.get(voucherId);
+        if (bucket == null) {
+            return null;
+        }
+        AdmissionStatsDTO stats = new AdmissionStatsDTO();
+        stats.setVoucherId(voucherId);
+        stats.setStock(bucket.stock);
+        stats.setRate(bucket.rate);
+        stats.setAdmittedPerSecond(bucket.admittedPerSecond);
+        stats.setWaiting(bucket.waiting.get());
+        stats.setAdmitted(bucket.admitted.sum());
+        stats.setRejected(bucket.rejected.sum());
+        return stats;
+    }
+
+    private TokenBucket createBucket(Long voucherId) {
+        long stock = loadStock(voucherId);
+        TokenBucket bucket = new TokenBucket(stock, rateOf(stock));
+        SeckillVoucher voucher = seckillVoucherService.getById(voucherId);
+        bucket.endTime = voucher == null ? null : voucher.getEndTime();
+        return bucket;
+    }
+
+    /**
+     * 每隔 RESIZE_INTERVAL_MILLIS 根据 Redis 中的剩余库存重新计算放行速率，同一时刻只有一个线程执行
+     */
+    private void resizeIfNecessary(Long voucherId, TokenBucket bucket) {
+        long now = System.currentTimeMillis();
+        long last = bucket.lastResizeMillis.get();
+        if (now - last < RESIZE_INTERVAL_MILLIS || !bucket.lastResizeMillis.compareAndSet(last, now)) {
+            return;
+        }
+        long admitted = bucket.admitted.sum();
+        bucket.admittedPerSecond = (admitted - bucket.lastAdmitted) * 1000.0 / (now - last);
+        bucket.lastAdmitted = admitted;
+        try {
+            long stock = loadStock(voucherId);
+            bucket.stock = stock;
+            bucket.resize(rateOf(stock));
+        } catch (Exception e) {
+            // 采样失败沿用原来的速率
+            log.error("刷新秒杀券 {} 的准入速率失败", voucherId, e);
+        }
+    }
+
+    /**
+     * 读取剩余库存，Redis 中没有时（例如改造前创建的秒杀券）从数据库加载并回写
+     */
+    private long loadStock(Long voucherId) {
+        String key = SECKILL_STOCK_KEY + voucherId;
+        String stock = stringRedisTemplate.opsForValue().get(key);
+        if (StrUtil.isNotBlank(stock)) {
+            return Long.parseLong(stock);
+        }
+        SeckillVoucher voucher = seckillVoucherService.getById(voucherId);
+        if (voucher == null) {
+            return 0L;
+        }
+        stringRedisTemplate.opsForValue().setIfAbsent(key, voucher.getStock().toString());
+        return voucher.getStock();
+    }
+
+    private static int rateOf(long stock) {
+        return (int) Math.max(MIN_RATE, Math.min(MAX_RATE, stock * RATE_PER_STOCK));
+    }
+
+    /**
+     * 预约式令牌桶：令牌按固定间隔生成，最多积攒 1 秒的量；
+     * 没有现成令牌时预约下一个令牌的生成时刻，调用方据此决定是否等待
+     */
+    private static class TokenBucket {
+        private volatile long stock;
+        private volatile int rate;
+        private volatile double admittedPerSecond;
+        private long lastAdmitted;
+        /**
+         * 秒杀结束时间，结束后淘汰
+         */
+        private volatile LocalDateTime endTime;
+        private volatile long lastAccessMillis = System.currentTimeMillis();
+
+        private double storedPermits;
+        private double maxPermits;
+        private volatile double intervalNanos;
+        private long nextFreeNanos;
+
+        private final AtomicLong lastResizeMillis = new AtomicLong(System.currentTimeMillis());
+        private final AtomicInteger waiting = new AtomicInteger();
+        private final LongAdder admitted = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+
+        TokenBucket(long stock, int rate) {
+            this.stock = stock;
+            this.rate = rate;
+            this.maxPermits = rate;
+            this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / (double) rate;
+            this.nextFreeNanos = System.nanoTime();
+            // 开抢瞬间允许一次满桶的突发
+            this.storedPermits = maxPermits;
+        }
+
+        synchronized void resize(int rate) {
+            resync(System.nanoTime());
+            this.rate = rate;
+            this.maxPermits = rate;
+            this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / (double) rate;
+            this.storedPermits = Math.min(storedPermits, maxPermits);
+        }
+
+        /**
+         * 预约一个令牌
+         * @param nowNanos 当前时间
+         * @param maxWaitNanos 可以接受的最长等待时间
+         * @return 拿到令牌前需要等待的纳秒数，超过 maxWaitNanos 时返回 -1 且不占用令牌
+         */
+        synchronized long reserve(long nowNanos, long maxWaitNanos) {
+            resync(nowNanos);
+            long waitNanos = Math.max(nextFreeNanos - nowNanos, 0L);
+            if (waitNanos > maxWaitNanos) {
+                return -1L;
+            }
+            double fromStored = Math.min(1.0, storedPermits);
+            storedPermits -= fromStored;
+            nextFreeNanos += (long) ((1.0 - fromStored) * intervalNanos);
+            return waitNanos;
+        }
+
+        /**
+         * 已经预约出去、还没有生成的令牌需要的时间
+         */
+        synchronized long backlogNanos(long nowNanos) {
+            return Math.max(nextFreeNanos - nowNanos, 0L);
+        }
+
+        /**
+         * 把上次预约之后空闲的时间折算成令牌
+         */
+        private void resync(long nowNanos) {
+            if (nowNanos > nextFreeNanos) {
+                storedPermits = Math.min(maxPermits, storedPermits + (nowNanos - nextFreeNanos) / intervalNanos);
+                nextFreeNanos = nowNanos;
+            }
+        }
+    }
+}
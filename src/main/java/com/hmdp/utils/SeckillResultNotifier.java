@@ -0,0 +1,68 @@
+package com.hmdp.utils;
+
+import cn.hutool.json.JSONUtil;
+import com.hmdp.dto.Result;
+import com.hmdp.dto.SeckillResultDTO;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 秒杀订单结果通知：订单处理完成后发布到 seckill:result:channel 频道，
+ * 每个节点收到后唤醒本节点上长轮询该订单的请求，客户端轮询到任意节点都能及时拿到结果
+ * @author Ghost
+ * @version 1.0
+ */
+@Component
+public class SeckillResultNotifier implements MessageListener {
+
+    public static final String CHANNEL = "seckill:result:channel";
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 正在长轮询订单结果的请求，key 为订单id
+     */
+    private final Map<Long, List<DeferredResult<Result>>> waiters = new ConcurrentHashMap<>();
+
+    /**
+     * 登记长轮询请求，请求完成（唤醒或超时）时自动取消登记
+     * @param orderId 订单id
+     * @param deferred 挂起的请求
+     */
+    public void subscribe(Long orderId, DeferredResult<Result> deferred) {
+        waiters.computeIfAbsent(orderId, id -> new CopyOnWriteArrayList<>()).add(deferred);
+        deferred.onCompletion(() -> waiters.computeIfPresent(orderId, (id, list) -> {
+            list.remove(deferred);
+            return list.isEmpty() ? null : list;
+        }));
+    }
+
+    /**
+     * 发布订单处理结果
+     * @param result 订单处理结果
+     */
+    public void publish(SeckillResultDTO result) {
+        stringRedisTemplate.convertAndSend(CHANNEL, JSONUtil.toJsonStr(result));
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        SeckillResultDTO result = JSONUtil.toBean(new String(message.getBody(), StandardCharsets.UTF_8), SeckillResultDTO.class);
+        List<DeferredResult<Result>> list = waiters.remove(result.getOrderId());
+        if (list != null) {
+            Result ok = Result.ok(result);
+            list.forEach(waiter -> waiter.setResult(ok));
+        }
+    }
+}
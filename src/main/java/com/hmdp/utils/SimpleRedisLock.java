@@ -1,72 +1,210 @@
 package com.hmdp.utils;
 
 import cn.hutool.core.lang.UUID;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.core.script.DefaultRedisScript;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
- * 使用 Redis 实现分布式锁初级版本
+ * 使用 Redis 实现的可重入分布式锁：
+ * 锁保存为 Hash（field 为线程标识，value 为重入次数），阻塞获取时通过解锁通知唤醒，
+ * 阻塞获取成功后由看门狗定时续期，直到释放锁
  * @author Ghost
  * @version 1.0
  */
+@Slf4j
 public class SimpleRedisLock implements ILock{
 
     private String name;// 业务名称
     private StringRedisTemplate stringRedisTemplate;
+    private RedisLockNotifier redisLockNotifier;
 
     public SimpleRedisLock(String name, StringRedisTemplate stringRedisTemplate) {
+        this(name, stringRedisTemplate, null);
+    }
+
+    public SimpleRedisLock(String name, StringRedisTemplate stringRedisTemplate, RedisLockNotifier redisLockNotifier) {
         this.name = name;
         this.stringRedisTemplate = stringRedisTemplate;
+        this.redisLockNotifier = redisLockNotifier;
     }
 
     private static final String KEY_PREFIX = "lock:";
     private static final String ID_PREFIX = UUID.fastUUID().toString(true) + "-";
+    /**
+     * 看门狗模式下锁的有效期，每隔三分之一有效期续期一次
+     */
+    private static final long WATCHDOG_LEASE_MILLIS = 30000L;
+
+    private static final DefaultRedisScript<Long> LOCK_SCRIPT;
     private static final DefaultRedisScript<Long> UNLOCK_SCRIPT;
+    private static final DefaultRedisScript<Long> RENEW_SCRIPT;
+
+    /**
+     * 看门狗线程池
+     */
+    private static final ScheduledExecutorService WATCHDOG_EXECUTOR = Executors.newSingleThreadScheduledExecutor();
+    /**
+     * 正在续期的锁，key 为锁的 key + 线程标识
+     */
+    private static final Map<String, ScheduledFuture<?>> RENEWALS = new ConcurrentHashMap<>();
 
     /**
      * 初始化 Lua 脚本
      */
     static {
+        LOCK_SCRIPT = new DefaultRedisScript<>();
+        LOCK_SCRIPT.setLocation(new ClassPathResource("lock.lua"));
+        LOCK_SCRIPT.setResultType(Long.class);
         UNLOCK_SCRIPT = new DefaultRedisScript<>();
         UNLOCK_SCRIPT.setLocation(new ClassPathResource("unlock.lua"));
         UNLOCK_SCRIPT.setResultType(Long.class);
+        RENEW_SCRIPT = new DefaultRedisScript<>();
+        RENEW_SCRIPT.setLocation(new ClassPathResource("renew.lua"));
+        RENEW_SCRIPT.setResultType(Long.class);
+    }
+
+    /**
+     * 本次持有锁的有效期，释放外层重入时用来重置有效期
+     */
+    private long leaseMillis = WATCHDOG_LEASE_MILLIS;
+
+    /**
+     * 预加载锁相关的 Lua 脚本，后续执行时 EVALSHA 直接命中，不需要回退到 EVAL 传输脚本内容
+     * @param stringRedisTemplate
+     */
+    public static void loadScripts(StringRedisTemplate stringRedisTemplate) {
+        stringRedisTemplate.execute((RedisCallback<Object>) connection -> {
+            for (DefaultRedisScript<Long> script : Arrays.asList(LOCK_SCRIPT, UNLOCK_SCRIPT, RENEW_SCRIPT)) {
+                loadScript(connection, script);
+            }
+            return null;
+        });
+    }
+
+    private static void loadScript(RedisConnection connection, DefaultRedisScript<Long> script) {
+        connection.scriptingCommands().scriptLoad(script.getScriptAsString().getBytes(StandardCharsets.UTF_8));
     }
 
     @Override
     public boolean tryLock(Long timeoutSec) {
         // 改进：防止误删锁，需要增加判断当前锁是不是自己的锁的逻辑=>通过判断线程标识
-        // 获取线程标识
-        String threadId = ID_PREFIX + Thread.currentThread().getId();
-
-        // 获取锁
-        Boolean result = stringRedisTemplate.opsForValue().setIfAbsent(
-                KEY_PREFIX + name, threadId, timeoutSec, TimeUnit.SECONDS);
+        long lease = TimeUnit.SECONDS.toMillis(timeoutSec);
+        if (tryAcquire(lease) != null) {
+            return false;
+        }
+        leaseMillis = lease;
+        return true;
+    }
 
-        return Boolean.TRUE.equals(result);
+    @Override
+    public boolean lock(long waitTime, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(waitTime);
+        // 1. 尝试获取锁
+        Long ttl = tryAcquire(WATCHDOG_LEASE_MILLIS);
+        if (ttl == null) {
+            onLocked();
+            return true;
+        }
+        // 2. 获取失败，登记等待解锁通知
+        RedisLockNotifier.Waiters waiters = redisLockNotifier == null ? null : redisLockNotifier.subscribe(name);
+        try {
+            while (true) {
+                // 2.1 登记之后再尝试一次，避免错过登记之前的解锁通知
+                ttl = tryAcquire(WATCHDOG_LEASE_MILLIS);
+                if (ttl == null) {
+                    onLocked();
+                    return true;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                // 2.2 挂起，直到收到解锁通知、锁过期或等待超时
+                long parkNanos = ttl > 0 ? Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(ttl)) : remaining;
+                if (waiters != null) {
+                    waiters.latch.tryAcquire(parkNanos, TimeUnit.NANOSECONDS);
+                } else {
+                    TimeUnit.NANOSECONDS.sleep(parkNanos);
+                }
+            }
+        } finally {
+            if (waiters != null) {
+                redisLockNotifier.unsubscribe(name);
+            }
+        }
     }
 
     @Override
-    public void unLock() {
+    public boolean unLock() {
         // 调用 Lua 脚本
-        stringRedisTemplate.execute(
+        Long released = stringRedisTemplate.execute(
                 UNLOCK_SCRIPT,
+                Arrays.asList(KEY_PREFIX + name, RedisLockNotifier.CHANNEL_PREFIX + name),
+                threadId(), String.valueOf(leaseMillis));
+        // 已经完全释放或者锁已经不属于自己，停止续期
+        if (released == null || released == 1L) {
+            ScheduledFuture<?> renewal = RENEWALS.remove(renewalKey());
+            if (renewal != null) {
+                renewal.cancel(false);
+            }
+        }
+        return released != null;
+    }
+
+    /**
+     * 执行加锁脚本
+     * @return null 代表获取锁成功，否则为锁的剩余有效期（毫秒）
+     */
+    private Long tryAcquire(long lease) {
+        return stringRedisTemplate.execute(
+                LOCK_SCRIPT,
                 Collections.singletonList(KEY_PREFIX + name),
-                ID_PREFIX +Thread.currentThread().getId());
+                threadId(), String.valueOf(lease));
     }
 
-    /*@Override
-    public void unLock() {
-        // 获取当前线程标识
-        String threadId = ID_PREFIX + Thread.currentThread().getId();
-        // 判断标识是否与锁的线程标识一致（当前线程和当前锁的占有者的线程）
-        String lockHolder = stringRedisTemplate.opsForValue().get(KEY_PREFIX + name);
-        if (threadId.equals(lockHolder)) {
-            // 释放锁
-            stringRedisTemplate.delete(KEY_PREFIX + name);
-        }
-    }*/
+    /**
+     * 看门狗：定时续期，直到锁被释放或者已经不属于自己
+     */
+    private void onLocked() {
+        leaseMillis = WATCHDOG_LEASE_MILLIS;
+        String key = KEY_PREFIX + name;
+        String threadId = threadId();
+        RENEWALS.computeIfAbsent(renewalKey(), k -> WATCHDOG_EXECUTOR.scheduleAtFixedRate(() -> {
+            try {
+                Long renewed = stringRedisTemplate.execute(
+                        RENEW_SCRIPT, Collections.singletonList(key), threadId, String.valueOf(WATCHDOG_LEASE_MILLIS));
+                if (renewed == null || renewed == 0L) {
+                    ScheduledFuture<?> renewal = RENEWALS.remove(k);
+                    if (renewal != null) {
+                        renewal.cancel(false);
+                    }
+                }
+            } catch (Exception e) {
+                // 续期失败不影响下一次续期
+                log.error("锁 {} 续期失败", key, e);
+            }
+        }, WATCHDOG_LEASE_MILLIS / 3, WATCHDOG_LEASE_MILLIS / 3, TimeUnit.MILLISECONDS));
+    }
+
+    private String threadId() {
+        return ID_PREFIX + Thread.currentThread().getId();
+    }
+
+    private String renewalKey() {
+        return KEY_PREFIX + name + ":" + threadId();
+    }
 }
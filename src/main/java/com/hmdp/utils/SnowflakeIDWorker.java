@@ -0,0 +1,193 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.lang.UUID;
+import cn.hutool.core.util.BooleanUtil;
+import cn.hutool.core.util.RandomUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.hmdp.utils.RedisConstants.ID_WORKER_KEY;
+import static com.hmdp.utils.RedisConstants.ID_WORKER_TTL;
+import static com.hmdp.utils.RedisIDWorker.BEGIN_TIMESTAMP;
+import static com.hmdp.utils.RedisIDWorker.COUNT_BITS;
+
+/**
+ * 雪花算法生成全局唯一 id，稳定运行时不访问 Redis。
+ * id 结构与 {@link RedisIDWorker} 保持一致：高位是相对 BEGIN_TIMESTAMP 的秒数，低 31 位是序列号，
+ * 其中低 31 位再拆成 10 位 workerId 和 21 位秒内序列号，新旧两种 id 可以按时间混合排序。
+ * workerId 0 保留不用：旧 id 的低 31 位是按天自增的计数，每天不超过 2^21 时 workerId 位全为 0，与新 id 不重叠。
+ * workerId 通过 Redis 租约分配，定时续期；时钟小幅回拨时沿用上一秒继续发号，回拨过大则拒绝发号
+ * @author Ghost
+ * @version 1.0
+ */
+@Slf4j
+@Component
+public class SnowflakeIDWorker {
+
+    private static final long WORKER_BITS = 10L;
+    private static final long SEQUENCE_BITS = COUNT_BITS - WORKER_BITS;
+    private static final long MAX_WORKER_ID = (1L << WORKER_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    /**
+     * 已经生成的 id（包括 {@link RedisIDWorker} 生成的）使用东八区墙上时间作为秒数，
+     * 这里用真实的 UTC 秒数加上固定偏移保持同一时间基准，不受夏令时、系统时区修改的影响
+     */
+    private static final long EPOCH_OFFSET_SECONDS = TimeUnit.HOURS.toSeconds(8);
+
+    /**
+     * 可以容忍的时钟回拨秒数（也是序列号耗尽时最多向后借用的秒数）
+     */
+    private static final long MAX_BACKWARD_SECONDS = 5L;
+
+    /**
+     * 租约到期前预留的安全时间，保证租约过期之前本节点已经停止发号
+     */
+    private static final long LEASE_SAFETY_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+    private static final DefaultRedisScript<Long> LEASE_SCRIPT;
+
+    /**
+     * 初始化 Lua 脚本
+     */
+    static {
+        LEASE_SCRIPT = new DefaultRedisScript<>();
+        LEASE_SCRIPT.setLocation(new ClassPathResource("worker_lease.lua"));
+        LEASE_SCRIPT.setResultType(Long.class);
+    }
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 本节点的租约持有者标识
+     */
+    private final String instanceId = UUID.fastUUID().toString(true);
+
+    private volatile long workerId = -1L;
+    /**
+     * 租约有效期截止时间，超过后停止发号直到重新获得租约
+     */
+    private volatile long leaseDeadlineMillis;
+
+    /**
+     * 上一次发号的状态：秒数 << SEQUENCE_BITS | 序列号
+     */
+    private final AtomicLong state = new AtomicLong();
+
+    @PostConstruct
+    private void init() {
+        acquireLease();
+    }
+
+    @PreDestroy
+    private void destroy() {
+        if (workerId >= 0) {
+            stringRedisTemplate.execute(LEASE_SCRIPT,
+                    Collections.singletonList(ID_WORKER_KEY + workerId), instanceId, "0");
+        }
+    }
+
+    /**
+     * 生成全局唯一 id
+     * @return
+     */
+    public long nextId() {
+        // 1. 租约失效时停止发号，避免与接手该 workerId 的节点重复
+        long worker = workerId;
+        if (worker < 0 || System.currentTimeMillis() > leaseDeadlineMillis) {
+            throw new IllegalStateException("workerId 租约已失效，暂停生成 id");
+        }
+
+        // 2. 生成秒数和秒内序列号
+        long next;
+        while (true) {
+            long now = currentSecond();
+            long prev = state.get();
+            long lastSecond = prev >>> SEQUENCE_BITS;
+            if (now > lastSecond) {
+                // 2.1 进入新的一秒，序列号从 0 开始
+                next = now << SEQUENCE_BITS;
+            } else {
+                // 2.2 同一秒或时钟回拨：沿用上一秒继续发号，序列号耗尽时借用下一秒
+                if (lastSecond - now > MAX_BACKWARD_SECONDS) {
+                    throw new IllegalStateException("时钟回拨 " + (lastSecond - now) + " 秒，拒绝生成 id");
+                }
+                next = (prev & SEQUENCE_MASK) < SEQUENCE_MASK ? prev + 1 : (lastSecond + 1) << SEQUENCE_BITS;
+            }
+            if (state.compareAndSet(prev, next)) {
+                break;
+            }
+        }
+
+        // 3. 拼接并返回
+        long second = next >>> SEQUENCE_BITS;
+        long sequence = next & SEQUENCE_MASK;
+        return (second - BEGIN_TIMESTAMP) << COUNT_BITS | worker << SEQUENCE_BITS | sequence;
+    }
+
+    /**
+     * 定时续期 workerId 租约，续期失败（租约已过期被他人占用）时重新申请
+     */
+    @Scheduled(fixedRate = 20000L)
+    public void renewLease() {
+        long worker = workerId;
+        try {
+            if (worker >= 0) {
+                long start = System.currentTimeMillis();
+                Long renewed = stringRedisTemplate.execute(LEASE_SCRIPT,
+                        Collections.singletonList(ID_WORKER_KEY + worker),
+                        instanceId, ID_WORKER_TTL.toString());
+                if (renewed != null && renewed == 1L) {
+                    leaseDeadlineMillis = start + TimeUnit.SECONDS.toMillis(ID_WORKER_TTL) - LEASE_SAFETY_MILLIS;
+                    return;
+                }
+                log.warn("workerId {} 的租约已丢失，重新申请", worker);
+                workerId = -1L;
+            }
+            acquireLease();
+        } catch (Exception e) {
+            // Redis 不可用时保持当前租约，直到截止时间后自动停止发号
+            log.error("续期 workerId 租约失败", e);
+        }
+    }
+
+    /**
+     * 从随机位置开始依次尝试占用空闲的 workerId（1 ~ MAX_WORKER_ID，0 保留给旧 id）
+     */
+    private void acquireLease() {
+        long offset = RandomUtil.randomLong(MAX_WORKER_ID);
+        for (long i = 0; i < MAX_WORKER_ID; i++) {
+            long candidate = 1 + (offset + i) % MAX_WORKER_ID;
+            long start = System.currentTimeMillis();
+            Boolean success = stringRedisTemplate.opsForValue().setIfAbsent(
+                    ID_WORKER_KEY + candidate, instanceId, ID_WORKER_TTL, TimeUnit.SECONDS);
+            if (BooleanUtil.isTrue(success)) {
+                leaseDeadlineMillis = start + TimeUnit.SECONDS.toMillis(ID_WORKER_TTL) - LEASE_SAFETY_MILLIS;
+                workerId = candidate;
+                log.info("获得 workerId 租约：{}", candidate);
+                return;
+            }
+        }
+        throw new IllegalStateException("没有空闲的 workerId");
+    }
+
+    /**
+     * 与 {@link RedisIDWorker} 使用相同的时间基准，但不依赖系统时区
+     */
+    private static long currentSecond() {
+        return Instant.now().getEpochSecond() + EPOCH_OFFSET_SECONDS;
+    }
+}
@@ -0,0 +1,189 @@
+package com.hmdp.utils;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * 不可变的有序 long 集合，用于关系图的邻接表：
+ * 主体是一个有序的 long[]，增量修改先记录在两个小的有序数组（新增、删除）中，
+ * 增量超过主体的 1/16 时再合并，百万级的邻接表单次修改不需要复制整个数组。
+ * 修改返回新的集合，读取不需要加锁
+ * @author Ghost
+ * @version 1.0
+ */
+final class SortedLongSet {
+
+    static final SortedLongSet EMPTY = new SortedLongSet(new long[0], new long[0], new long[0]);
+
+    private static final long[] NONE = new long[0];
+    /**
+     * 增量至少积累到这么多才合并
+     */
+    private static final int MIN_COMPACT_THRESHOLD = 32;
+
+    /**
+     * 主体，有序无重复
+     */
+    private final long[] base;
+    /**
+     * 新增的元素，有序，与 base 不相交
+     */
+    private final long[] added;
+    /**
+     * 删除的元素，有序，是 base 的子集
+     */
+    private final long[] removed;
+
+    private SortedLongSet(long[] base, long[] added, long[] removed) {
+        this.base = base;
+        this.added = added;
+        this.removed = removed;
+    }
+
+    /**
+     * 使用有序无重复的数组创建集合，数组之后不能再修改
+     */
+    static SortedLongSet of(long[] sorted) {
+        return sorted.length == 0 ? EMPTY : new SortedLongSet(sorted, NONE, NONE);
+    }
+
+    int size() {
+        return base.length + added.length - removed.length;
+    }
+
+    boolean contains(long value) {
+        if (Arrays.binarySearch(added, value) >= 0) {
+            return true;
+        }
+        return Arrays.binarySearch(base, value) >= 0 && Arrays.binarySearch(removed, value) < 0;
+    }
+
+    SortedLongSet add(long value) {
+        int r = Arrays.binarySearch(removed, value);
+        if (r >= 0) {
+            return new SortedLongSet(base, added, delete(removed, r));
+        }
+        if (Arrays.binarySearch(base, value) >= 0) {
+            return this;
+        }
+        int a = Arrays.binarySearch(added, value);
+        if (a >= 0) {
+            return this;
+        }
+        return compactIfNeeded(new SortedLongSet(base, insert(added, -a - 1, value), removed));
+    }
+
+    SortedLongSet remove(long value) {
+        int a = Arrays.binarySearch(added, value);
+        if (a >= 0) {
+            return new SortedLongSet(base, delete(added, a), removed);
+        }
+        if (Arrays.binarySearch(base, value) < 0) {
+            return this;
+        }
+        int r = Arrays.binarySearch(removed, value);
+        if (r >= 0) {
+            return this;
+        }
+        return compactIfNeeded(new SortedLongSet(base, added, insert(removed, -r - 1, value)));
+    }
+
+    /**
+     * 有序数组形式，没有增量时直接返回主体，调用方不能修改
+     */
+    long[] toArray() {
+        if (added.length == 0 && removed.length == 0) {
+            return base;
+        }
+        long[] result = new long[size()];
+        int[] n = {0};
+        forEach(value -> result[n[0]++] = value);
+        return result;
+    }
+
+    /**
+     * 按从小到大的顺序遍历，边遍历边合并主体和增量
+     */
+    void forEach(LongConsumer action) {
+        int i = 0, j = 0, k = 0;
+        while (i < base.length || j < added.length) {
+            if (j == added.length || (i < base.length && base[i] < added[j])) {
+                long value = base[i++];
+                while (k < removed.length && removed[k] < value) {
+                    k++;
+                }
+                if (k < removed.length && removed[k] == value) {
+                    continue;
+                }
+                action.accept(value);
+            } else {
+                action.accept(added[j++]);
+            }
+        }
+    }
+
+    /**
+     * 两个有序数组的交集：长度相差很大时对长数组二分查找，否则线性归并
+     */
+    static long[] intersect(long[] a, long[] b) {
+        if (a.length > b.length) {
+            long[] t = a;
+            a = b;
+            b = t;
+        }
+        long[] result = new long[a.length];
+        int n = 0;
+        if ((long) a.length * 32 < b.length) {
+            int from = 0;
+            for (long value : a) {
+                int index = Arrays.binarySearch(b, from, b.length, value);
+                if (index >= 0) {
+                    result[n++] = value;
+                    from = index + 1;
+                } else {
+                    from = -index - 1;
+                }
+            }
+        } else {
+            int i = 0, j = 0;
+            while (i < a.length && j < b.length) {
+                if (a[i] < b[j]) {
+                    i++;
+                } else if (a[i] > b[j]) {
+                    j++;
+                } else {
+                    result[n++] = a[i];
+                    i++;
+                    j++;
+                }
+            }
+        }
+        return n == result.length ? result : Arrays.copyOf(result, n);
+    }
+
+    private static SortedLongSet compactIfNeeded(SortedLongSet set) {
+        int delta = set.added.length + set.removed.length;
+        if (delta < Math.max(MIN_COMPACT_THRESHOLD, set.base.length >>> 4)) {
+            return set;
+        }
+        return of(set.toArray());
+    }
+
+    private static long[] insert(long[] array, int index, long value) {
+        long[] result = new long[array.length + 1];
+        System.arraycopy(array, 0, result, 0, index);
+        result[index] = value;
+        System.arraycopy(array, index, result, index + 1, array.length - index);
+        return result;
+    }
+
+    private static long[] delete(long[] array, int index) {
+        if (array.length == 1) {
+            return NONE;
+        }
+        long[] result = new long[array.length - 1];
+        System.arraycopy(array, 0, result, 0, index);
+        System.arraycopy(array, index + 1, result, index, array.length - index - 1);
+        return result;
+    }
+}
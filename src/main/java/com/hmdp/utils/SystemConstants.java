@@ -5,4 +5,40 @@ public class SystemConstants {
     public static final String USER_NICK_NAME_PREFIX = "user_";
     public static final int DEFAULT_PAGE_SIZE = 5;
     public static final int MAX_PAGE_SIZE = 10;
+    /**
+     * 热门博客滚动查询的游标类型：按排行榜排名翻页
+     */
+    public static final long HOT_CURSOR_RANKING = 0L;
+    /**
+     * 热门博客滚动查询的游标类型：按 (liked, id) 查询数据库翻页
+     */
+    public static final long HOT_CURSOR_DB = 1L;
+    /**
+     * 订单状态：未支付
+     */
+    public static final int ORDER_STATUS_UNPAID = 1;
+    /**
+     * 订单状态：已取消
+     */
+    public static final int ORDER_STATUS_CANCELLED = 4;
+    /**
+     * 评论列表中每条一级评论预览的回复数
+     */
+    public static final int COMMENT_REPLY_PREVIEW_SIZE = 3;
+    /**
+     * 评论状态：禁止查看
+     */
+    public static final int COMMENT_STATUS_HIDDEN = 2;
+    /**
+     * 收件箱、发件箱最多保留的博客数
+     */
+    public static final int FEED_MAX_SIZE = 1000;
+    /**
+     * 粉丝数超过该值的作者发布博客时不再推送，改为粉丝读取时拉取
+     */
+    public static final int FEED_PUSH_MAX_FOLLOWERS = 5000;
+    /**
+     * 推送时每批查询的粉丝数
+     */
+    public static final int FEED_PUSH_BATCH_SIZE = 1000;
 }
@@ -0,0 +1,129 @@
+package com.hmdp.utils;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 两级锁：先获取本节点的本地锁，再获取分布式锁。
+ * 同一个节点上争抢同一把锁的线程先在本地排队（或者直接失败），只有拿到本地锁的线程才会访问 Redis，
+ * Redis 上的加锁请求数与单节点并发数无关。
+ * 本地锁按锁名称一把一把创建，可重入：同一个线程再次获取同名的锁（即使是新建的 TwoTierLock 对象）不会阻塞自己，
+ * 不同名称的锁互不影响；没有线程持有或等待时本地锁从表中移除。
+ * 获取和释放必须在同一个线程中进行
+ * @author Ghost
+ * @version 1.0
+ */
+public class TwoTierLock implements ILock {
+
+    /**
+     * 锁名称 -> 本地锁，引用计数为 0 时移除
+     */
+    private static final ConcurrentHashMap<String, LocalLock> LOCAL_LOCKS = new ConcurrentHashMap<>();
+
+    private final String name;
+    private final ILock delegate;
+
+    /**
+     * @param name 锁名称，相同名称的锁使用同一个本地锁
+     * @param delegate 分布式锁
+     */
+    public TwoTierLock(String name, ILock delegate) {
+        this.name = name;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public boolean tryLock(Long timeoutSec) {
+        // 1. 本地锁被其它线程占用，直接失败，不再访问 Redis
+        LocalLock local = retain(name);
+        if (!local.lock.tryLock()) {
+            release(name);
+            return false;
+        }
+        // 2. 获取分布式锁，失败或者抛出异常（例如 Redis 连接失败）时释放本地锁
+        boolean success = false;
+        try {
+            success = delegate.tryLock(timeoutSec);
+        } finally {
+            onDistributedLock(local, success);
+        }
+        return success;
+    }
+
+    @Override
+    public boolean lock(long waitTime, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(waitTime);
+        // 1. 在本地排队等待，本节点的持有者释放时立即被唤醒
+        LocalLock local = retain(name);
+        boolean locked = false;
+        try {
+            locked = local.lock.tryLock(unit.toNanos(waitTime), TimeUnit.NANOSECONDS);
+        } finally {
+            if (!locked) {
+                release(name);
+            }
+        }
+        if (!locked) {
+            return false;
+        }
+        // 2. 用剩余的等待时间获取分布式锁
+        boolean success = false;
+        try {
+            success = delegate.lock(Math.max(deadline - System.nanoTime(), 0L), TimeUnit.NANOSECONDS);
+        } finally {
+            onDistributedLock(local, success);
+        }
+        return success;
+    }
+
+    @Override
+    public boolean unLock() {
+        LocalLock local = LOCAL_LOCKS.get(name);
+        try {
+            return delegate.unLock();
+        } finally {
+            if (local != null && local.lock.isHeldByCurrentThread()) {
+                local.lock.unlock();
+                release(name);
+            }
+        }
+    }
+
+    private boolean onDistributedLock(LocalLock local, boolean success) {
+        if (!success) {
+            // 分布式锁被其它节点持有，释放本地锁
+            local.lock.unlock();
+            release(name);
+        }
+        return success;
+    }
+
+    /**
+     * 获取锁名称对应的本地锁，引用计数加一
+     */
+    private static LocalLock retain(String name) {
+        return LOCAL_LOCKS.compute(name, (key, local) -> {
+            if (local == null) {
+                local = new LocalLock();
+            }
+            local.refs++;
+            return local;
+        });
+    }
+
+    /**
+     * 引用计数减一，为 0 时移除本地锁
+     */
+    private static void release(String name) {
+        LOCAL_LOCKS.computeIfPresent(name, (key, local) -> --local.refs == 0 ? null : local);
+    }
+
+    /**
+     * 本地锁，引用计数只在 {@link ConcurrentHashMap#compute} 中修改
+     */
+    private static class LocalLock {
+        private final ReentrantLock lock = new ReentrantLock();
+        private int refs;
+    }
+}
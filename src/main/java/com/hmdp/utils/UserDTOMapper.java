@@ -0,0 +1,104 @@
+package com.hmdp.utils;
+
+import com.hmdp.dto.UserDTO;
+import com.hmdp.entity.User;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * UserDTO 转换工具：User -> UserDTO -> Redis Hash 以及反向转换。
+ * 登录和 token 校验每个请求都会执行，逐个字段手写转换，不使用反射，也不创建中间 map
+ * @author Ghost
+ * @version 1.0
+ */
+public class UserDTOMapper {
+
+    public static final String ID = "id";
+    public static final String NICK_NAME = "nickName";
+    public static final String ICON = "icon";
+
+    private UserDTOMapper() {
+    }
+
+    /**
+     * User 转为 UserDTO
+     * @param user
+     * @return user 为 null 时返回 null
+     */
+    public static UserDTO fromUser(User user) {
+        if (user == null) {
+            return null;
+        }
+        UserDTO userDTO = new UserDTO();
+        userDTO.setId(user.getId());
+        userDTO.setNickName(user.getNickName());
+        userDTO.setIcon(user.getIcon());
+        return userDTO;
+    }
+
+    /**
+     * UserDTO 转为 Redis Hash，值为 null 的字段不保存
+     * @param userDTO
+     * @return field -> value
+     */
+    public static Map<String, String> toHash(UserDTO userDTO) {
+        Map<String, String> hash = new HashMap<>(4);
+        if (userDTO.getId() != null) {
+            hash.put(ID, userDTO.getId().toString());
+        }
+        if (userDTO.getNickName() != null) {
+            hash.put(NICK_NAME, userDTO.getNickName());
+        }
+        if (userDTO.getIcon() != null) {
+            hash.put(ICON, userDTO.getIcon());
+        }
+        return hash;
+    }
+
+    /**
+     * Redis Hash（HGETALL 的结果）转为 UserDTO
+     * @param hash field -> value
+     * @return
+     */
+    public static UserDTO fromHash(Map<?, ?> hash) {
+        UserDTO userDTO = new UserDTO();
+        for (Map.Entry<?, ?> entry : hash.entrySet()) {
+            setField(userDTO, entry.getKey().toString(), entry.getValue());
+        }
+        return userDTO;
+    }
+
+    /**
+     * Lua 脚本中 HGETALL 返回的 field、value 交替列表转为 UserDTO
+     * @param fields field1, value1, field2, value2...
+     * @return
+     */
+    public static UserDTO fromHashFields(List<?> fields) {
+        UserDTO userDTO = new UserDTO();
+        for (int i = 0; i + 1 < fields.size(); i += 2) {
+            setField(userDTO, fields.get(i).toString(), fields.get(i + 1));
+        }
+        return userDTO;
+    }
+
+    private static void setField(UserDTO userDTO, String field, Object value) {
+        if (value == null) {
+            return;
+        }
+        switch (field) {
+            case ID:
+                userDTO.setId(Long.valueOf(value.toString()));
+                break;
+            case NICK_NAME:
+                userDTO.setNickName(value.toString());
+                break;
+            case ICON:
+                userDTO.setIcon(value.toString());
+                break;
+            default:
+                // 忽略未知字段
+        }
+    }
+}
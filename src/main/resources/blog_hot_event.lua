@@ -0,0 +1,42 @@
+-- 博客热度事件：累加热度分，并按重力公式重新计算排行榜分数
+-- 分数 = (热度分 + 1) / (发布小时数 + 2) ^ 重力因子
+-- KEYS[1]：热度分 Hash，KEYS[2]：发布时间 Hash，KEYS[3]：排行榜 ZSET，KEYS[4]：博客最近未能加入排行榜的标记
+-- ARGV[1]：博客 id，ARGV[2]：热度分增量，ARGV[3]：当前时间戳（秒），ARGV[4]：重力因子
+-- 博客不在排行榜中时（被淘汰或者发布于初始化之前）：
+-- ARGV[5]：发布时间戳（秒），ARGV[6]：数据库中的热度分，ARGV[7]：排行榜最多保留的博客数，ARGV[8]：未加入标记的有效期（秒）
+local function score(points, created)
+    local hours = math.max(tonumber(ARGV[3]) - tonumber(created), 0) / 3600
+    return (points + 1) / math.pow(hours + 2, tonumber(ARGV[4]))
+end
+
+local created = redis.call('hget', KEYS[2], ARGV[1])
+if (not created) then
+    if (not ARGV[5]) then
+        if (redis.call('exists', KEYS[4]) == 1) then
+            -- 最近已经查询过数据库且没有加入，标记过期之前不再查询
+            return 0
+        end
+        -- 不在排行榜中，由调用方查询发布时间和热度分后重新执行
+        return -1
+    end
+    -- 重新加入排行榜：排行榜已满且分数不高于最后一名时不加入
+    local points = math.max(tonumber(ARGV[6]) + tonumber(ARGV[2]), 0)
+    local s = score(points, ARGV[5])
+    if (redis.call('zcard', KEYS[3]) >= tonumber(ARGV[7])) then
+        local lowest = redis.call('zrange', KEYS[3], 0, 0, 'WITHSCORES')
+        if (lowest[2] and s <= tonumber(lowest[2])) then
+            redis.call('set', KEYS[4], '1', 'EX', ARGV[8])
+            return 0
+        end
+    end
+    redis.call('hset', KEYS[2], ARGV[1], ARGV[5])
+    redis.call('hset', KEYS[1], ARGV[1], points)
+    redis.call('zadd', KEYS[3], s, ARGV[1])
+    return 1
+end
+local points = redis.call('hincrby', KEYS[1], ARGV[1], ARGV[2])
+if (points < 0) then
+    points = 0
+end
+redis.call('zadd', KEYS[3], score(points, created), ARGV[1])
+return 1
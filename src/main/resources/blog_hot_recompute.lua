@@ -0,0 +1,22 @@
+-- 按当前时间重新计算排行榜中所有博客的分数，淘汰排名靠后的博客；
+-- 读取热度分和写入分数在同一个脚本中完成，不会用旧的热度分覆盖期间热度事件写入的分数
+-- KEYS[1]：热度分 Hash，KEYS[2]：发布时间 Hash，KEYS[3]：排行榜 ZSET
+-- ARGV[1]：当前时间戳（秒），ARGV[2]：重力因子，ARGV[3]：排行榜最多保留的博客数
+local now = tonumber(ARGV[1])
+local gravity = tonumber(ARGV[2])
+local times = redis.call('hgetall', KEYS[2])
+for i = 1, #times, 2 do
+    local points = math.max(tonumber(redis.call('hget', KEYS[1], times[i]) or '0'), 0)
+    local hours = math.max(now - tonumber(times[i + 1]), 0) / 3600
+    redis.call('zadd', KEYS[3], (points + 1) / math.pow(hours + 2, gravity), times[i])
+end
+-- 淘汰排名靠后的博客，分批删除，避免超过 Lua 的参数个数限制
+local evicted = redis.call('zrange', KEYS[3], 0, -tonumber(ARGV[3]) - 1)
+local batch = 1000
+for i = 1, #evicted, batch do
+    local last = math.min(i + batch - 1, #evicted)
+    redis.call('zrem', KEYS[3], unpack(evicted, i, last))
+    redis.call('hdel', KEYS[2], unpack(evicted, i, last))
+    redis.call('hdel', KEYS[1], unpack(evicted, i, last))
+end
+return #evicted
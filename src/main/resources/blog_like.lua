@@ -0,0 +1,11 @@
+-- 点赞或取消点赞：已点赞则取消，未点赞则点赞
+-- KEYS[1]：博客点赞用户 ZSET
+-- ARGV[1]：用户 id，ARGV[2]：当前时间戳（毫秒）
+if (redis.call('zscore', KEYS[1], ARGV[1])) then
+    -- 已点赞，取消点赞
+    redis.call('zrem', KEYS[1], ARGV[1])
+    return 0
+end
+-- 未点赞，点赞
+redis.call('zadd', KEYS[1], ARGV[2], ARGV[1])
+return 1
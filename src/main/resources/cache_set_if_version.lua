@@ -0,0 +1,11 @@
+-- 带版本号的缓存写入：读数据库之前记下版本号，写回时版本号没有变化（期间没有修改、删除缓存）才写入，避免旧数据覆盖
+-- KEYS[1]：缓存 key，KEYS[2]：版本号 key
+-- ARGV[1]：缓存值，ARGV[2]：有效期（秒），ARGV[3]：读取数据库之前的版本号，ARGV[4]：为 1 时只覆盖已经存在的缓存
+if ((redis.call('get', KEYS[2]) or '0') ~= ARGV[3]) then
+    return 0
+end
+if (ARGV[4] == '1' and redis.call('exists', KEYS[1]) == 0) then
+    return 0
+end
+redis.call('set', KEYS[1], ARGV[1], 'EX', ARGV[2])
+return 1
@@ -0,0 +1,10 @@
+-- 取出待写回数据库的计数增量：把增量 Hash 改名为处理中的 Hash，期间新的增量会累计到新的 Hash 中，不会丢失；
+-- 处理中的 Hash 在写回数据库之后才删除，上一次写回失败或者进程崩溃留下的处理中 Hash 优先重新写回
+-- KEYS[1]：待写回的计数增量 Hash，KEYS[2]：处理中的计数增量 Hash
+if (redis.call('exists', KEYS[2]) == 0) then
+    if (redis.call('exists', KEYS[1]) == 0) then
+        return {}
+    end
+    redis.call('rename', KEYS[1], KEYS[2])
+end
+return redis.call('hgetall', KEYS[2])
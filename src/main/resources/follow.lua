@@ -0,0 +1,15 @@
+-- 同步关注集合：集合已经加载到 Redis 时才增删，未加载时由下一次查询从数据库完整加载，避免写入不完整的集合；
+-- 无论集合是否存在都把版本号加一，正在从数据库加载（读到的是修改之前的关注关系）的集合不会再写入
+-- KEYS[1]：用户关注的人 Set，KEYS[2]：关注集合的版本号
+-- ARGV[1]：1 代表关注，0 代表取关，ARGV[2]：被关注的用户 id，ARGV[3]：版本号有效期（秒）
+redis.call('incr', KEYS[2])
+redis.call('expire', KEYS[2], ARGV[3])
+if (redis.call('exists', KEYS[1]) == 0) then
+    return 0
+end
+if (ARGV[1] == '1') then
+    redis.call('sadd', KEYS[1], ARGV[2])
+else
+    redis.call('srem', KEYS[1], ARGV[2])
+end
+return 1
@@ -0,0 +1,17 @@
+-- 写入从数据库加载的关注集合：集合不存在、并且查询数据库期间没有关注或取关（版本号没有变化）时才写入
+-- KEYS[1]：用户关注的人 Set，KEYS[2]：关注集合的版本号
+-- ARGV[1]：查询数据库之前的版本号，ARGV[2]：集合有效期（秒），ARGV[3...]：集合成员（包括占位成员）
+if (redis.call('exists', KEYS[1]) == 1) then
+    -- 已经被其它请求加载
+    return 1
+end
+if ((redis.call('get', KEYS[2]) or '0') ~= ARGV[1]) then
+    return 0
+end
+-- 分批写入，避免成员过多时超过 Lua 的参数个数限制
+local batch = 1000
+for i = 3, #ARGV, batch do
+    redis.call('sadd', KEYS[1], unpack(ARGV, i, math.min(i + batch - 1, #ARGV)))
+end
+redis.call('expire', KEYS[1], ARGV[2])
+return 1
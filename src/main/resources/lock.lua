@@ -0,0 +1,10 @@
+-- 获取可重入锁：锁不存在或者是自己持有的锁时，重入次数 +1 并重置有效期
+-- KEYS[1]：锁的 key，ARGV[1]：线程标识，ARGV[2]：锁的有效期（毫秒）
+if (redis.call('exists', KEYS[1]) == 0 or redis.call('hexists', KEYS[1], ARGV[1]) == 1) then
+    redis.call('hincrby', KEYS[1], ARGV[1], 1)
+    redis.call('pexpire', KEYS[1], ARGV[2])
+    -- 获取锁成功
+    return nil
+end
+-- 获取锁失败，返回锁的剩余有效期
+return redis.call('pttl', KEYS[1])
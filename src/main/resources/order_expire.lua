@@ -0,0 +1,14 @@
+-- 取出已到期的订单并从待取消集合中移除，保证多个节点不会重复处理同一个订单
+-- 1. 参数列表
+-- 1.1 当前时间戳（毫秒）
+local now = ARGV[1]
+-- 1.2 一批最多取出的订单数
+local limit = ARGV[2]
+
+-- 2. 查询到期的订单
+local ids = redis.call('zrangebyscore', KEYS[1], '-inf', now, 'LIMIT', 0, limit)
+-- 3. 移除已取出的订单
+if (#ids > 0) then
+    redis.call('zrem', KEYS[1], unpack(ids))
+end
+return ids
@@ -0,0 +1,24 @@
+-- 滑动窗口限流：每条规则一个 ZSET，member 为请求标识，score 为请求时间戳（毫秒）
+-- KEYS：每条规则的 key
+-- ARGV[1]：当前时间戳（毫秒），ARGV[2]：本次请求标识，之后每两个参数为一条规则的窗口长度（毫秒）和请求数上限
+local now = tonumber(ARGV[1])
+local member = ARGV[2]
+
+-- 1. 先校验所有规则，任意一条超出限制都不记录本次请求
+for i = 1, #KEYS do
+    local window = tonumber(ARGV[i * 2 + 1])
+    local limit = tonumber(ARGV[i * 2 + 2])
+    -- 1.1 移除窗口之外的请求
+    redis.call('zremrangebyscore', KEYS[i], '-inf', now - window)
+    -- 1.2 窗口内请求数已达上限，返回规则序号
+    if (redis.call('zcard', KEYS[i]) >= limit) then
+        return i
+    end
+end
+
+-- 2. 全部通过，记录本次请求
+for i = 1, #KEYS do
+    redis.call('zadd', KEYS[i], now, member)
+    redis.call('pexpire', KEYS[i], ARGV[i * 2 + 1])
+end
+return 0
@@ -0,0 +1,7 @@
+-- 看门狗续期：只有锁仍被自己持有时才重置有效期
+-- KEYS[1]：锁的 key，ARGV[1]：线程标识，ARGV[2]：锁的有效期（毫秒）
+if (redis.call('hexists', KEYS[1], ARGV[1]) == 1) then
+    redis.call('pexpire', KEYS[1], ARGV[2])
+    return 1
+end
+return 0
@@ -0,0 +1,36 @@
+-- 秒杀资格判断：库存是否充足、用户是否已经下过单，有资格则扣减库存并登记订单处理结果
+-- 1. 参数列表
+-- 1.1 优惠券 id
+local voucherId = ARGV[1]
+-- 1.2 用户 id
+local userId = ARGV[2]
+-- 1.3 订单 id
+local orderId = ARGV[3]
+-- 1.4 订单处理结果的有效期（秒）
+local resultTtl = ARGV[4]
+
+-- 2. 数据 key
+-- 2.1 库存 key
+local stockKey = 'seckill:stock:' .. voucherId
+-- 2.2 已下单用户 key
+local orderKey = 'seckill:order:' .. voucherId
+-- 2.3 订单处理结果 key
+local resultKey = 'seckill:result:' .. orderId
+
+-- 3. 判断库存是否充足
+if (tonumber(redis.call('get', stockKey) or '0') <= 0) then
+    -- 库存不足，返回 1
+    return 1
+end
+-- 4. 判断用户是否下过单
+if (redis.call('sismember', orderKey, userId) == 1) then
+    -- 重复下单，返回 2
+    return 2
+end
+-- 5. 扣减库存，登记下单用户
+redis.call('incrby', stockKey, -1)
+redis.call('sadd', orderKey, userId)
+-- 6. 登记订单处理结果：处理中
+redis.call('hset', resultKey, 'userId', userId, 'voucherId', voucherId, 'status', '0')
+redis.call('expire', resultKey, resultTtl)
+return 0
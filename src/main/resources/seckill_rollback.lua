@@ -0,0 +1,20 @@
+-- 秒杀补偿：订单没有落库时归还预扣的库存，按需移除下单用户，用户可以重新抢购
+-- 1. 参数列表
+-- 1.1 优惠券 id
+local voucherId = ARGV[1]
+-- 1.2 用户 id
+local userId = ARGV[2]
+-- 1.3 是否移除下单用户，1：移除（用户没有订单），0：保留（用户已经有订单）
+local removeUser = ARGV[3]
+
+-- 2. 数据 key
+local stockKey = 'seckill:stock:' .. voucherId
+local orderKey = 'seckill:order:' .. voucherId
+
+-- 3. 归还库存
+redis.call('incrby', stockKey, 1)
+-- 4. 移除下单用户
+if (removeUser == '1') then
+    redis.call('srem', orderKey, userId)
+end
+return 0
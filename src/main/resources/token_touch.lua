@@ -0,0 +1,11 @@
+-- 查询登录用户信息，剩余有效期低于阈值时才续期，读取和续期只需要一次网络往返
+-- KEYS[1]：token 的 key，ARGV[1]：有效期（秒），ARGV[2]：续期阈值（秒）
+local user = redis.call('hgetall', KEYS[1])
+if (#user == 0) then
+    -- token 不存在或者已经过期
+    return user
+end
+if (redis.call('ttl', KEYS[1]) < tonumber(ARGV[2])) then
+    redis.call('expire', KEYS[1], ARGV[1])
+end
+return user
@@ -3,9 +3,20 @@
 --- Created by 20890.
 --- DateTime: 2023/12/21 12:43
 ---
--- 比较线程标识与锁的标识是否一致
-if(redis.call('get', KEYS[1]) == ARGV[1]) then
-    -- 释放锁 del key
-    return redis.call('del', KEYS[1])
+-- 释放可重入锁：KEYS[1]：锁的 key，KEYS[2]：解锁通知频道，ARGV[1]：线程标识，ARGV[2]：锁的有效期（毫秒）
+-- 判断锁是否是自己的
+if (redis.call('hexists', KEYS[1], ARGV[1]) == 0) then
+    -- 不是自己的锁（或者已经过期），直接返回
+    return nil
 end
-return 0
\ No newline at end of file
+-- 重入次数 -1
+local count = redis.call('hincrby', KEYS[1], ARGV[1], -1)
+if (count > 0) then
+    -- 还有外层持有，重置有效期
+    redis.call('pexpire', KEYS[1], ARGV[2])
+    return 0
+end
+-- 已经完全释放，删除锁 del key 并通知等待的线程
+redis.call('del', KEYS[1])
+redis.call('publish', KEYS[2], ARGV[1])
+return 1
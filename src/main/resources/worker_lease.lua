@@ -0,0 +1,10 @@
+-- 续期或释放 id 生成器的 workerId 租约，只有租约持有者可以操作
+-- KEYS[1]：租约 key，ARGV[1]：持有者标识，ARGV[2]：续期时长（秒），为 0 时释放租约
+if (redis.call('get', KEYS[1]) ~= ARGV[1]) then
+    -- 租约已过期或被他人持有
+    return 0
+end
+if (tonumber(ARGV[2]) == 0) then
+    return redis.call('del', KEYS[1])
+end
+return redis.call('expire', KEYS[1], ARGV[2])
@@ -0,0 +1,101 @@
+package com.hmdp;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.hmdp.dto.UserDTO;
+import com.hmdp.entity.Blog;
+import com.hmdp.entity.BlogComments;
+import com.hmdp.service.IBlogCommentsService;
+import com.hmdp.service.IBlogService;
+import com.hmdp.utils.UserHolder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+
+import javax.annotation.Resource;
+import java.util.List;
+
+import static com.hmdp.utils.SystemConstants.COMMENT_REPLY_PREVIEW_SIZE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 校验评论游标分页的结果，并统计查询第一页评论执行的 SQL 数量
+ * @author Ghost
+ * @version 1.0
+ */
+@SpringBootTest
+@Import(BlogHotQueryTests.StatementCounterConfig.class)
+class BlogCommentsQueryTests {
+
+    private static final int COMMENTS = 25;
+    private static final int REPLIES = 5;
+
+    @Resource
+    private IBlogService blogService;
+    @Resource
+    private IBlogCommentsService blogCommentsService;
+    @Resource
+    private BlogHotQueryTests.StatementCounter statementCounter;
+
+    private Long blogId;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void scrollCommentsWithReplies() {
+        // 1. 准备一篇博客，COMMENTS 条一级评论，第一条评论有 REPLIES 条回复
+        UserDTO user = new UserDTO();
+        user.setId(1L);
+        UserHolder.saveUser(user);
+        Blog blog = new Blog().setUserId(1L).setShopId(1L).setTitle("comments").setImages("").setContent("comments");
+        blogService.save(blog);
+        blogId = blog.getId();
+        Long first = null;
+        for (int i = 0; i < COMMENTS; i++) {
+            Long id = (Long) blogCommentsService.saveComment(
+                    new BlogComments().setBlogId(blogId).setContent("comment " + i)).getData();
+            if (first == null) {
+                first = id;
+            }
+        }
+        for (int i = 0; i < REPLIES; i++) {
+            blogCommentsService.saveComment(new BlogComments().setBlogId(blogId).setAnswerId(first).setContent("reply " + i));
+        }
+
+        // 2. 第一页未命中缓存：一条一级评论查询 + 一条回复预览查询
+        statementCounter.reset();
+        List<BlogComments> page = (List<BlogComments>) blogCommentsService.queryComments(blogId, null).getData();
+        System.out.println("第一页未命中缓存：执行 " + statementCounter.get() + " 条 SQL");
+        assertTrue(statementCounter.get() <= 2);
+
+        // 3. 第一页命中缓存：不访问数据库
+        statementCounter.reset();
+        blogCommentsService.queryComments(blogId, null);
+        assertEquals(0, statementCounter.get());
+
+        // 4. 按游标翻完所有一级评论，不重复、不遗漏，最早的一条评论附带回复预览
+        int total = page.size();
+        BlogComments oldest = page.get(page.size() - 1);
+        while (!page.isEmpty()) {
+            Long lastId = page.get(page.size() - 1).getId();
+            page = (List<BlogComments>) blogCommentsService.queryComments(blogId, lastId).getData();
+            page.forEach(comment -> assertTrue(comment.getId() < lastId));
+            total += page.size();
+            if (!page.isEmpty()) {
+                oldest = page.get(page.size() - 1);
+            }
+        }
+        assertEquals(COMMENTS, total);
+        assertEquals(first, oldest.getId());
+        assertEquals(Math.min(REPLIES, COMMENT_REPLY_PREVIEW_SIZE), oldest.getReplies().size());
+    }
+
+    @AfterEach
+    void cleanUp() {
+        UserHolder.removeUser();
+        if (blogId != null) {
+            blogCommentsService.remove(new QueryWrapper<BlogComments>().eq("blog_id", blogId));
+            blogService.removeById(blogId);
+        }
+    }
+}
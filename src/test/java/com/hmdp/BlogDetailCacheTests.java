@@ -0,0 +1,77 @@
+package com.hmdp;
+
+import com.hmdp.dto.UserDTO;
+import com.hmdp.entity.Blog;
+import com.hmdp.service.IBlogService;
+import com.hmdp.utils.UserHolder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import javax.annotation.Resource;
+
+import static com.hmdp.utils.RedisConstants.BLOG_LIKED_KEY;
+import static com.hmdp.utils.RedisConstants.CACHE_BLOG_KEY;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 校验博客详情命中缓存时不访问数据库，点赞状态按当前用户实时查询，修改博客后缓存失效
+ * @author Ghost
+ * @version 1.0
+ */
+@SpringBootTest
+@Import(BlogHotQueryTests.StatementCounterConfig.class)
+class BlogDetailCacheTests {
+
+    @Resource
+    private IBlogService blogService;
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+    @Resource
+    private BlogHotQueryTests.StatementCounter statementCounter;
+
+    private Long blogId;
+
+    @Test
+    void queryBlogDetailFromCache() {
+        UserDTO user = new UserDTO();
+        user.setId(1L);
+        UserHolder.saveUser(user);
+        Blog blog = new Blog().setUserId(1L).setShopId(1L).setTitle("detail").setImages("").setContent("detail");
+        blogService.save(blog);
+        blogId = blog.getId();
+
+        // 1. 未命中：查询博客和作者
+        statementCounter.reset();
+        Blog detail = (Blog) blogService.queryBlogById(blogId).getData();
+        System.out.println("博客详情未命中缓存：执行 " + statementCounter.get() + " 条 SQL");
+        assertNotNull(detail.getName());
+        assertFalse(detail.getIsLike());
+
+        // 2. 命中：不访问数据库，点赞状态来自当前用户的点赞记录
+        stringRedisTemplate.opsForZSet().add(BLOG_LIKED_KEY + blogId, "1", System.currentTimeMillis());
+        statementCounter.reset();
+        detail = (Blog) blogService.queryBlogById(blogId).getData();
+        assertEquals(0, statementCounter.get());
+        assertTrue(detail.getIsLike());
+
+        // 3. 修改后缓存失效，再次查询得到新标题
+        blogService.updateBlog(new Blog().setId(blogId).setTitle("edited"));
+        assertEquals("edited", ((Blog) blogService.queryBlogById(blogId).getData()).getTitle());
+    }
+
+    @AfterEach
+    void cleanUp() {
+        UserHolder.removeUser();
+        if (blogId != null) {
+            blogService.removeById(blogId);
+            stringRedisTemplate.delete(CACHE_BLOG_KEY + blogId);
+            stringRedisTemplate.delete(BLOG_LIKED_KEY + blogId);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.hmdp;
+
+import com.hmdp.dto.Result;
+import com.hmdp.entity.Blog;
+import com.hmdp.service.IBlogService;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import javax.annotation.Resource;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static com.hmdp.utils.RedisConstants.CACHE_BLOG_HOT_KEY;
+import static com.hmdp.utils.RedisConstants.CACHE_USER_KEY;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 统计查询热门博客时每个请求执行的 SQL 数量
+ * @author Ghost
+ * @version 1.0
+ */
+@SpringBootTest
+class BlogHotQueryTests {
+
+    @Resource
+    private IBlogService blogService;
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+    @Resource
+    private StatementCounter statementCounter;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void countStatementsPerRequest() {
+        // 1. 先查询一次，拿到这一页的作者，然后清空这一页和作者的缓存
+        List<Blog> blogs = (List<Blog>) blogService.queryHotBlog(1).getData();
+        stringRedisTemplate.delete(CACHE_BLOG_HOT_KEY + 1);
+        stringRedisTemplate.delete(blogs.stream().map(blog -> CACHE_USER_KEY + blog.getUserId()).collect(Collectors.toList()));
+
+        // 2. 缓存全部未命中：一条分页查询 + 一条批量查询作者
+        statementCounter.reset();
+        Result cold = blogService.queryHotBlog(1);
+        int coldStatements = statementCounter.get();
+        System.out.println("缓存未命中：" + blogs.size() + " 条博客执行 " + coldStatements + " 条 SQL");
+        assertTrue(coldStatements <= 2, "缓存未命中时应当最多执行 2 条 SQL，实际 " + coldStatements);
+
+        // 3. 整页缓存命中：不访问数据库
+        statementCounter.reset();
+        Result warm = blogService.queryHotBlog(1);
+        System.out.println("缓存命中：执行 " + statementCounter.get() + " 条 SQL");
+        assertEquals(0, statementCounter.get());
+        assertEquals(((List<?>) cold.getData()).size(), ((List<?>) warm.getData()).size());
+    }
+
+    /**
+     * 统计执行的查询语句数量：同时拦截两个 query 方法，无论与分页插件的包装顺序如何，每条语句只统计一次
+     */
+    @Intercepts({
+            @Signature(type = Executor.class, method = "query",
+                    args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+            @Signature(type = Executor.class, method = "query",
+                    args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class,
+                            CacheKey.class, BoundSql.class})
+    })
+    static class StatementCounter implements Interceptor {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Object intercept(Invocation invocation) throws Throwable {
+            count.incrementAndGet();
+            return invocation.proceed();
+        }
+
+        void reset() {
+            count.set(0);
+        }
+
+        int get() {
+            return count.get();
+        }
+    }
+
+    @TestConfiguration
+    static class StatementCounterConfig {
+        @Bean
+        StatementCounter statementCounter() {
+            return new StatementCounter();
+        }
+    }
+}
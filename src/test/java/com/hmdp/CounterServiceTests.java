@@ -0,0 +1,93 @@
+package com.hmdp;
+
+import com.hmdp.entity.Blog;
+import com.hmdp.service.IBlogService;
+import com.hmdp.utils.Counter;
+import com.hmdp.utils.CounterService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import javax.annotation.Resource;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 对比热门博客点赞时逐条更新数据库与计数服务的吞吐量，并校验计数服务写回后的结果准确，
+ * 定时合并、写回调到很长的间隔，由测试手动触发
+ * @author Ghost
+ * @version 1.0
+ */
+@SpringBootTest(properties = {"hmdp.counter.merge-interval=3600000", "hmdp.counter.flush-interval=3600000"})
+class CounterServiceTests {
+
+    private static final int THREADS = 32;
+    private static final int EVENTS_PER_THREAD = 200;
+
+    @Resource
+    private IBlogService blogService;
+    @Resource
+    private CounterService counterService;
+
+    private Long blogId;
+
+    @Test
+    void compareWithPerEventUpdate() throws InterruptedException {
+        Blog blog = new Blog().setUserId(1L).setShopId(1L).setTitle("counter benchmark")
+                .setImages("").setContent("counter benchmark").setLiked(0).setComments(0);
+        blogService.save(blog);
+        blogId = blog.getId();
+        int events = THREADS * EVENTS_PER_THREAD;
+
+        // 1. 逐条更新同一行，所有线程争抢同一把行锁
+        long direct = run(() -> blogService.update().setSql("liked = liked + 1").eq("id", blogId).update());
+        assertEquals(events, blogService.getById(blogId).getLiked().intValue());
+
+        // 2. 计数服务：只累加到本地，合并、写回各一次
+        long counted = run(() -> counterService.increment(Counter.BLOG_LIKED, blogId, 1));
+        long begin = System.nanoTime();
+        counterService.merge();
+        counterService.merge();
+        assertEquals(events * 2L, counterService.get(Counter.BLOG_LIKED, blogId, events));
+        counterService.flush();
+        long flushMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+        assertEquals(events * 2, blogService.getById(blogId).getLiked().intValue());
+
+        // 3. 写回时计数不会减到 0 以下
+        counterService.increment(Counter.BLOG_LIKED, blogId, -events * 3L);
+        counterService.merge();
+        counterService.flush();
+        assertEquals(0, blogService.getById(blogId).getLiked().intValue());
+
+        System.out.printf("%d 次点赞：逐条更新 %d ms，计数服务累加 %d ms + 合并写回 %d ms%n",
+                events, direct, counted, flushMillis);
+    }
+
+    private long run(Runnable event) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch done = new CountDownLatch(THREADS);
+        long begin = System.nanoTime();
+        for (int t = 0; t < THREADS; t++) {
+            executor.execute(() -> {
+                for (int i = 0; i < EVENTS_PER_THREAD; i++) {
+                    event.run();
+                }
+                done.countDown();
+            });
+        }
+        done.await();
+        executor.shutdown();
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        if (blogId != null) {
+            blogService.removeById(blogId);
+        }
+    }
+}
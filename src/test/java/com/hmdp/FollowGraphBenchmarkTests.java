@@ -0,0 +1,143 @@
+package com.hmdp;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.hmdp.entity.Follow;
+import com.hmdp.service.IFollowService;
+import com.hmdp.utils.FollowGraph;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 对比数据库、Redis Set 与进程内关注关系图在粉丝数、遍历粉丝、共同粉丝三类查询上的耗时
+ * @author Ghost
+ * @version 1.0
+ */
+@SpringBootTest
+class FollowGraphBenchmarkTests {
+
+    /**
+     * 两个测试大V，各有 FOLLOWERS 个粉丝，其中一半是共同粉丝
+     */
+    private static final long STAR_A = 900_000_000L;
+    private static final long STAR_B = 900_000_001L;
+    private static final long FIRST_FOLLOWER = 900_000_010L;
+    private static final int FOLLOWERS = 20000;
+    private static final int ROUNDS = 20;
+    private static final String REDIS_PREFIX = "bench:followers:";
+
+    @Resource
+    private IFollowService followService;
+    @Resource
+    private FollowGraph followGraph;
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+    @Resource
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void compareFollowerQueries() {
+        // 1. 准备数据：数据库、Redis 粉丝集合、关系图
+        List<Follow> follows = new ArrayList<>(FOLLOWERS * 2);
+        for (int i = 0; i < FOLLOWERS; i++) {
+            follows.add(new Follow().setUserId(FIRST_FOLLOWER + i).setFollowUserId(STAR_A));
+            follows.add(new Follow().setUserId(FIRST_FOLLOWER + FOLLOWERS / 2 + i).setFollowUserId(STAR_B));
+        }
+        followService.saveBatch(follows, 1000);
+        for (long star : new long[]{STAR_A, STAR_B}) {
+            String[] members = follows.stream().filter(follow -> follow.getFollowUserId() == star)
+                    .map(follow -> follow.getUserId().toString()).toArray(String[]::new);
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                ((StringRedisConnection) connection).sAdd(REDIS_PREFIX + star, members);
+                return null;
+            });
+        }
+        followGraph.rebuild();
+
+        // 2. 粉丝数
+        report("粉丝数", FOLLOWERS,
+                () -> followService.query().eq("follow_user_id", STAR_A).count(),
+                () -> stringRedisTemplate.opsForSet().size(REDIS_PREFIX + STAR_A).intValue(),
+                () -> followGraph.followerCount(STAR_A));
+
+        // 3. 遍历全部粉丝
+        report("遍历粉丝", FOLLOWERS,
+                () -> scanFollowersFromDatabase(STAR_A).length,
+                () -> stringRedisTemplate.opsForSet().members(REDIS_PREFIX + STAR_A).size(),
+                () -> {
+                    int[] n = {0};
+                    followGraph.forEachFollower(STAR_A, follower -> n[0]++);
+                    return n[0];
+                });
+
+        // 4. 共同粉丝
+        report("共同粉丝", FOLLOWERS / 2,
+                () -> jdbcTemplate.queryForList("SELECT a.user_id FROM tb_follow a JOIN tb_follow b " +
+                        "ON a.user_id = b.user_id WHERE a.follow_user_id = ? AND b.follow_user_id = ?",
+                        Long.class, STAR_A, STAR_B).size(),
+                () -> {
+                    Set<String> common = stringRedisTemplate.opsForSet()
+                            .intersect(REDIS_PREFIX + STAR_A, REDIS_PREFIX + STAR_B);
+                    return common.size();
+                },
+                () -> followGraph.commonFollowers(STAR_A, STAR_B).length);
+    }
+
+    /**
+     * 按 id 分批扫描数据库中的粉丝
+     */
+    private long[] scanFollowersFromDatabase(long userId) {
+        long[] result = new long[0];
+        long lastId = 0;
+        while (true) {
+            List<Follow> batch = followService.query().select("id", "user_id")
+                    .eq("follow_user_id", userId).gt("id", lastId)
+                    .orderByAsc("id").last("LIMIT 1000").list();
+            int offset = result.length;
+            result = Arrays.copyOf(result, offset + batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                result[offset + i] = batch.get(i).getUserId();
+            }
+            if (batch.size() < 1000) {
+                return result;
+            }
+            lastId = batch.get(batch.size() - 1).getId();
+        }
+    }
+
+    private static void report(String name, int expected, Supplier<Integer> database, Supplier<Integer> redis,
+                               Supplier<Integer> graph) {
+        System.out.printf("%s：数据库 %.3f ms，Redis %.3f ms，关系图 %.3f ms%n", name,
+                measure(expected, database), measure(expected, redis), measure(expected, graph));
+    }
+
+    private static double measure(int expected, Supplier<Integer> task) {
+        // 预热，同时校验结果
+        assertEquals(expected, task.get().intValue());
+        long begin = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            task.get();
+        }
+        return (System.nanoTime() - begin) / 1e6 / ROUNDS;
+    }
+
+    @AfterEach
+    void cleanUp() {
+        followService.remove(new QueryWrapper<Follow>().in("follow_user_id", STAR_A, STAR_B));
+        stringRedisTemplate.delete(Arrays.asList(REDIS_PREFIX + STAR_A, REDIS_PREFIX + STAR_B));
+        followGraph.rebuild();
+    }
+}
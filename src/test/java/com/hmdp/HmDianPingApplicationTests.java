@@ -3,18 +3,32 @@ package com.hmdp;
 import com.hmdp.entity.Shop;
 import com.hmdp.service.impl.ShopServiceImpl;
 import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.ILock;
 import com.hmdp.utils.RedisIDWorker;
+import com.hmdp.utils.RedisLockNotifier;
+import com.hmdp.utils.SimpleRedisLock;
+import com.hmdp.utils.SnowflakeIDWorker;
+import com.hmdp.utils.TwoTierLock;
 import org.junit.jupiter.api.Test;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.StringRedisTemplate;
 
 import javax.annotation.Resource;
 
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
 
 import static com.hmdp.utils.RedisConstants.CACHE_SHOP_KEY;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 
 @SpringBootTest
 class HmDianPingApplicationTests {
@@ -25,6 +39,14 @@ class HmDianPingApplicationTests {
     private ShopServiceImpl shopService;
     @Resource
     private RedisIDWorker redisIDWorker;
+    @Resource
+    private SnowflakeIDWorker snowflakeIDWorker;
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+    @Resource
+    private RedisLockNotifier redisLockNotifier;
+    @Resource
+    private RedissonClient redissonClient;
 
     // 准备线程池
     private ExecutorService es = Executors.newFixedThreadPool(500);
@@ -49,6 +71,142 @@ class HmDianPingApplicationTests {
         long end = System.currentTimeMillis();
         System.out.println("耗时：" + (end - begin));
     }
+    /**
+     * 对比逐个 INCR、号段模式与雪花算法生成 id 的吞吐量
+     */
+    @Test
+    void benchmarkRedisIDWorker() throws InterruptedException {
+        int threads = 300, perThread = 100;
+        double incrRate = measureIdRate(threads, perThread, () -> redisIDWorker.nextId("order"), null);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        double segmentRate = measureIdRate(threads, perThread, () -> redisIDWorker.nextIdBySegment("order"), ids);
+        Set<Long> snowflakeIds = ConcurrentHashMap.newKeySet();
+        double snowflakeRate = measureIdRate(threads, perThread, snowflakeIDWorker::nextId, snowflakeIds);
+        System.out.printf("INCR 模式：%.0f ids/s，号段模式：%.0f ids/s，雪花算法：%.0f ids/s%n",
+                incrRate, segmentRate, snowflakeRate);
+        assertEquals(threads * perThread, ids.size());
+        assertEquals(threads * perThread, snowflakeIds.size());
+    }
+
+    private double measureIdRate(int threads, int perThread, LongSupplier generator, Set<Long> ids)
+            throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(threads);
+        Runnable task = () -> {
+            for (int i = 0; i < perThread; i++) {
+                long id = generator.getAsLong();
+                if (ids != null) {
+                    ids.add(id);
+                }
+            }
+            latch.countDown();
+        };
+        long begin = System.nanoTime();
+        for (int i = 0; i < threads; i++) {
+            es.submit(task);
+        }
+        latch.await();
+        return threads * perThread * 1e9 / (System.nanoTime() - begin);
+    }
+
+    /**
+     * 多线程争抢同一把锁，对比 SimpleRedisLock、两级锁与 Redisson RLock 的吞吐量和获取锁的平均耗时
+     */
+    @Test
+    void benchmarkLockContention() throws InterruptedException {
+        int threads = 50, perThread = 20;
+        LockBenchmark simple = measureLock(threads, perThread, () -> {
+            ILock lock = new SimpleRedisLock("benchmark", stringRedisTemplate, redisLockNotifier);
+            return new LockHandle() {
+                public boolean acquire() throws InterruptedException {
+                    return lock.lock(10, TimeUnit.SECONDS);
+                }
+                public void release() {
+                    lock.unLock();
+                }
+            };
+        });
+        LockBenchmark twoTier = measureLock(threads, perThread, () -> {
+            ILock lock = new TwoTierLock("lock:benchmark",
+                    new SimpleRedisLock("benchmark", stringRedisTemplate, redisLockNotifier));
+            return new LockHandle() {
+                public boolean acquire() throws InterruptedException {
+                    return lock.lock(10, TimeUnit.SECONDS);
+                }
+                public void release() {
+                    lock.unLock();
+                }
+            };
+        });
+        LockBenchmark redisson = measureLock(threads, perThread, () -> {
+            RLock lock = redissonClient.getLock("lock:benchmark:redisson");
+            return new LockHandle() {
+                public boolean acquire() throws InterruptedException {
+                    return lock.tryLock(10, TimeUnit.SECONDS);
+                }
+                public void release() {
+                    lock.unlock();
+                }
+            };
+        });
+        System.out.printf("SimpleRedisLock：%.0f ops/s，平均获取耗时 %.2fms；TwoTierLock：%.0f ops/s，平均获取耗时 %.2fms；"
+                        + "Redisson：%.0f ops/s，平均获取耗时 %.2fms%n",
+                simple.opsPerSecond, simple.avgAcquireMillis, twoTier.opsPerSecond, twoTier.avgAcquireMillis,
+                redisson.opsPerSecond, redisson.avgAcquireMillis);
+        assertEquals(threads * perThread, simple.acquired);
+        assertEquals(threads * perThread, twoTier.acquired);
+        assertEquals(threads * perThread, redisson.acquired);
+    }
+
+    private interface LockHandle {
+        boolean acquire() throws InterruptedException;
+
+        void release();
+    }
+
+    private static class LockBenchmark {
+        double opsPerSecond;
+        double avgAcquireMillis;
+        long acquired;
+    }
+
+    /**
+     * @param lockFactory 每个线程各自创建一次锁
+     */
+    private LockBenchmark measureLock(int threads, int perThread, Supplier<LockHandle> lockFactory)
+            throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(threads);
+        LongAdder acquireNanos = new LongAdder();
+        LongAdder acquired = new LongAdder();
+        Runnable task = () -> {
+            LockHandle lock = lockFactory.get();
+            try {
+                for (int i = 0; i < perThread; i++) {
+                    long start = System.nanoTime();
+                    if (!lock.acquire()) {
+                        continue;
+                    }
+                    acquireNanos.add(System.nanoTime() - start);
+                    acquired.increment();
+                    lock.release();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                latch.countDown();
+            }
+        };
+        long begin = System.nanoTime();
+        for (int i = 0; i < threads; i++) {
+            es.submit(task);
+        }
+        latch.await();
+        LockBenchmark result = new LockBenchmark();
+        result.acquired = acquired.sum();
+        result.opsPerSecond = result.acquired * 1e9 / (System.nanoTime() - begin);
+        result.avgAcquireMillis = result.acquired == 0 ? 0 : acquireNanos.sum() / 1e6 / result.acquired;
+        return result;
+    }
+
     @Test
     void testSaveShop() {
         Shop shop = shopService.getById(1);
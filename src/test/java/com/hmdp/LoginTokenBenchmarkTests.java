@@ -0,0 +1,108 @@
+package com.hmdp;
+
+import cn.hutool.core.lang.UUID;
+import cn.hutool.jwt.JWT;
+import com.hmdp.dto.UserDTO;
+import com.hmdp.interceptor.RefreshTokenInterceptor;
+import com.hmdp.utils.LoginTokenManager;
+import com.hmdp.utils.UserDTOMapper;
+import com.hmdp.utils.UserHolder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.hmdp.utils.RedisConstants.LOGIN_REVOKED_KEY;
+import static com.hmdp.utils.RedisConstants.LOGIN_USER_KEY;
+import static com.hmdp.utils.RedisConstants.LOGIN_USER_TTL;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 对比普通 token（Redis Hash）与签名 token 的内存占用和校验延迟
+ * @author Ghost
+ * @version 1.0
+ */
+@SpringBootTest(properties = {"hmdp.token.signed=true", "hmdp.token.secret=login-token-benchmark"})
+class LoginTokenBenchmarkTests {
+
+    private static final int TOKENS = 10000;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+    @Resource
+    private LoginTokenManager loginTokenManager;
+
+    private final List<String> hashTokens = new ArrayList<>();
+
+    @Test
+    void compareTokenModes() throws Exception {
+        UserDTO user = new UserDTO();
+        user.setId(1010L);
+        user.setNickName("user_benchmark");
+        user.setIcon("/imgs/icons/benchmark.jpg");
+
+        // 1. 准备两种 token
+        Map<String, String> userMap = UserDTOMapper.toHash(user);
+        for (int i = 0; i < TOKENS; i++) {
+            String token = UUID.randomUUID().toString(true);
+            stringRedisTemplate.opsForHash().putAll(LOGIN_USER_KEY + token, userMap);
+            stringRedisTemplate.expire(LOGIN_USER_KEY + token, LOGIN_USER_TTL, TimeUnit.MINUTES);
+            hashTokens.add(token);
+        }
+        List<String> signedTokens = new ArrayList<>(TOKENS);
+        for (int i = 0; i < TOKENS; i++) {
+            signedTokens.add(loginTokenManager.createSignedToken(user));
+        }
+
+        // 2. 内存：普通 token 每个会话占用一个 Redis Hash，签名 token 不占用 Redis
+        Long perSession = stringRedisTemplate.execute((RedisCallback<Long>) connection ->
+                (Long) connection.execute("MEMORY", "USAGE".getBytes(StandardCharsets.UTF_8),
+                        (LOGIN_USER_KEY + hashTokens.get(0)).getBytes(StandardCharsets.UTF_8)));
+        System.out.println("普通 token：每个会话 Redis 内存 " + perSession + " 字节，token 长度 " + hashTokens.get(0).length());
+        System.out.println("签名 token：每个会话 Redis 内存 0 字节，token 长度 " + signedTokens.get(0).length());
+
+        // 3. 校验延迟：每个 token 只校验一次（普通 token 全部未命中本地缓存）
+        RefreshTokenInterceptor interceptor = new RefreshTokenInterceptor(stringRedisTemplate, loginTokenManager);
+        double hashMicros = measureVerify(interceptor, hashTokens, user.getId());
+        double signedMicros = measureVerify(interceptor, signedTokens, user.getId());
+        System.out.printf("校验延迟：普通 token %.1fus/次，签名 token %.1fus/次%n", hashMicros, signedMicros);
+
+        // 4. 注销后签名 token 立即失效
+        String revoked = signedTokens.get(0);
+        loginTokenManager.revoke(revoked);
+        assertNull(loginTokenManager.parseSignedToken(revoked));
+        assertNotNull(loginTokenManager.parseSignedToken(signedTokens.get(1)));
+        stringRedisTemplate.opsForZSet().remove(LOGIN_REVOKED_KEY, JWT.of(revoked).getPayload(JWT.JWT_ID));
+    }
+
+    private double measureVerify(RefreshTokenInterceptor interceptor, List<String> tokens, Long expectedUserId)
+            throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        long begin = System.nanoTime();
+        for (String token : tokens) {
+            MockHttpServletRequest request = new MockHttpServletRequest();
+            request.addHeader("authorization", token);
+            interceptor.preHandle(request, response, null);
+            assertEquals(expectedUserId, UserHolder.getUser().getId());
+            interceptor.postHandle(request, response, null, null);
+        }
+        return (System.nanoTime() - begin) / 1e3 / tokens.size();
+    }
+
+    @AfterEach
+    void cleanUp() {
+        stringRedisTemplate.delete(hashTokens.stream().map(token -> LOGIN_USER_KEY + token).collect(Collectors.toList()));
+        hashTokens.clear();
+    }
+}
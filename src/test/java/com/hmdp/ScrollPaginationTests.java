@@ -0,0 +1,89 @@
+package com.hmdp;
+
+import com.hmdp.controller.BlogController;
+import com.hmdp.dto.ScrollResult;
+import com.hmdp.dto.UserDTO;
+import com.hmdp.entity.Blog;
+import com.hmdp.service.IBlogService;
+import com.hmdp.utils.UserHolder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 校验游标分页翻完所有数据不重复、不遗漏，每页只执行一条 SQL（不执行 COUNT 查询）
+ * @author Ghost
+ * @version 1.0
+ */
+@SpringBootTest
+@Import(BlogHotQueryTests.StatementCounterConfig.class)
+class ScrollPaginationTests {
+
+    private static final long USER_ID = 1_000_000L;
+    private static final int BLOGS = 25;
+
+    @Resource
+    private IBlogService blogService;
+    @Resource
+    private BlogController blogController;
+    @Resource
+    private BlogHotQueryTests.StatementCounter statementCounter;
+
+    private final List<Long> blogIds = new ArrayList<>();
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void scrollMyBlogs() {
+        // 1. 一个没有其他博客的用户发布 BLOGS 篇博客
+        UserDTO user = new UserDTO();
+        user.setId(USER_ID);
+        UserHolder.saveUser(user);
+        for (int i = 0; i < BLOGS; i++) {
+            Blog blog = new Blog().setUserId(USER_ID).setShopId(1L).setTitle("scroll " + i).setImages("").setContent("scroll");
+            blogService.save(blog);
+            blogIds.add(blog.getId());
+        }
+
+        // 2. 按游标翻完所有博客，id 严格递减
+        Set<Long> seen = new HashSet<>();
+        String cursor = null;
+        long lastId = Long.MAX_VALUE;
+        do {
+            statementCounter.reset();
+            ScrollResult scroll = (ScrollResult) blogController.queryMyBlogOfScroll(cursor).getData();
+            assertEquals(1, statementCounter.get());
+            List<Long> ids = ((List<Blog>) scroll.getList()).stream().map(Blog::getId).collect(Collectors.toList());
+            assertFalse(ids.isEmpty());
+            for (Long id : ids) {
+                assertTrue(id < lastId);
+                assertTrue(seen.add(id));
+                lastId = id;
+            }
+            cursor = scroll.getNextCursor();
+        } while (cursor != null);
+        assertEquals(new HashSet<>(blogIds), seen);
+
+        // 3. 无效的游标
+        assertFalse(blogController.queryMyBlogOfScroll("not a cursor").getSuccess());
+    }
+
+    @AfterEach
+    void cleanUp() {
+        UserHolder.removeUser();
+        if (!blogIds.isEmpty()) {
+            blogService.removeByIds(blogIds);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.hmdp;
+
+import com.hmdp.controller.VoucherOrderController;
+import com.hmdp.dto.Result;
+import com.hmdp.dto.UserDTO;
+import com.hmdp.entity.SeckillVoucher;
+import com.hmdp.entity.Voucher;
+import com.hmdp.entity.VoucherOrder;
+import com.hmdp.service.ISeckillVoucherService;
+import com.hmdp.service.IVoucherOrderService;
+import com.hmdp.service.IVoucherService;
+import com.hmdp.utils.UserHolder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.annotation.Resource;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import static com.hmdp.utils.RedisConstants.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 秒杀压测模拟器：模拟 N 个用户并发抢购一批秒杀券，统计吞吐量、延迟分位数和错误分布，
+ * 结束后校验没有超卖、没有重复购买，且数据库与 Redis 库存一致。
+ * 运行在本地 Redis 和 MySQL（或兼容 MySQL 协议的数据库）上，通过系统属性调整压测规模：
+ * <ul>
+ *     <li>hmdp.load.users：用户数，默认 2000</li>
+ *     <li>hmdp.load.requestsPerUser：每个用户的请求次数，大于 1 时模拟重复下单，默认 2</li>
+ *     <li>hmdp.load.concurrency：并发线程数，默认 200</li>
+ *     <li>hmdp.load.stocks：每张秒杀券的库存，逗号分隔，一个数字对应一张券，默认 100,10,1</li>
+ * </ul>
+ * @author Ghost
+ * @version 1.0
+ */
+@SpringBootTest
+class SeckillLoadSimulatorTests {
+
+    /**
+     * 模拟用户的 id 起点，避免与真实用户冲突
+     */
+    private static final long USER_ID_BASE = 900_000_000L;
+    /**
+     * 等待异步下单全部落库的最长时间
+     */
+    private static final long DRAIN_TIMEOUT_MILLIS = 60_000L;
+
+    @Resource
+    private VoucherOrderController voucherOrderController;
+    @Resource
+    private IVoucherService voucherService;
+    @Resource
+    private ISeckillVoucherService seckillVoucherService;
+    @Resource
+    private IVoucherOrderService voucherOrderService;
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    private final List<Long> voucherIds = new ArrayList<>();
+
+    @Test
+    void simulateFlashSale() throws InterruptedException {
+        int users = Integer.getInteger("hmdp.load.users", 2000);
+        int requestsPerUser = Integer.getInteger("hmdp.load.requestsPerUser", 2);
+        int concurrency = Integer.getInteger("hmdp.load.concurrency", 200);
+        List<Integer> stocks = Arrays.stream(System.getProperty("hmdp.load.stocks", "100,10,1").split(","))
+                .map(String::trim).map(Integer::valueOf).collect(Collectors.toList());
+
+        // 1. 准备秒杀券
+        for (Integer stock : stocks) {
+            voucherIds.add(createSeckillVoucher(stock));
+        }
+
+        // 2. 并发抢购
+        int total = users * requestsPerUser;
+        long[] latencies = new long[total];
+        AtomicInteger cursor = new AtomicInteger();
+        Map<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+        ExecutorService es = Executors.newFixedThreadPool(concurrency);
+        CountDownLatch latch = new CountDownLatch(total);
+        long begin = System.nanoTime();
+        for (int i = 0; i < total; i++) {
+            long userId = USER_ID_BASE + i % users;
+            es.submit(() -> {
+                UserDTO user = new UserDTO();
+                user.setId(userId);
+                UserHolder.saveUser(user);
+                Long voucherId = voucherIds.get(ThreadLocalRandom.current().nextInt(voucherIds.size()));
+                long start = System.nanoTime();
+                String outcome;
+                try {
+                    Result result = voucherOrderController.seckillVoucher(voucherId, new MockHttpServletResponse());
+                    outcome = result.getSuccess() ? "ok" : result.getErrorMsg();
+                } catch (Exception e) {
+                    outcome = e.getClass().getSimpleName();
+                } finally {
+                    UserHolder.removeUser();
+                }
+                latencies[cursor.getAndIncrement()] = System.nanoTime() - start;
+                outcomes.computeIfAbsent(outcome, k -> new LongAdder()).increment();
+                latch.countDown();
+            });
+        }
+        latch.await();
+        long elapsed = System.nanoTime() - begin;
+        es.shutdown();
+
+        // 3. 输出压测报告
+        Arrays.sort(latencies);
+        System.out.println("请求数：" + total + "，并发：" + concurrency + "，库存：" + stocks);
+        System.out.printf("吞吐量：%.1f req/s%n", total * 1e9 / elapsed);
+        System.out.printf("延迟 p50=%.2fms p99=%.2fms p999=%.2fms max=%.2fms%n",
+                percentile(latencies, 0.5), percentile(latencies, 0.99),
+                percentile(latencies, 0.999), latencies[latencies.length - 1] / 1e6);
+        new TreeMap<>(outcomes).forEach((outcome, count) -> System.out.println("  " + outcome + "：" + count.sum()));
+
+        // 4. 等待异步下单全部落库后校验一致性
+        long accepted = outcomes.getOrDefault("ok", new LongAdder()).sum();
+        awaitOrdersPersisted(accepted);
+        long persisted = 0;
+        for (int i = 0; i < voucherIds.size(); i++) {
+            persisted += verifyVoucher(voucherIds.get(i), stocks.get(i));
+        }
+        assertEquals(accepted, persisted, "抢购成功的请求数与落库订单数不一致");
+    }
+
+    /**
+     * 校验单张秒杀券：不超卖、不重复购买、数据库与 Redis 库存一致
+     * @return 该券的订单数
+     */
+    private long verifyVoucher(Long voucherId, int initialStock) {
+        List<VoucherOrder> orders = voucherOrderService.query().eq("voucher_id", voucherId).list();
+        long buyers = orders.stream().map(VoucherOrder::getUserId).distinct().count();
+        SeckillVoucher voucher = seckillVoucherService.getById(voucherId);
+        String redisStock = stringRedisTemplate.opsForValue().get(SECKILL_STOCK_KEY + voucherId);
+
+        assertTrue(orders.size() <= initialStock, "超卖：券 " + voucherId + " 库存 " + initialStock + "，订单 " + orders.size());
+        assertEquals(orders.size(), buyers, "重复购买：券 " + voucherId);
+        assertEquals(initialStock - orders.size(), voucher.getStock().intValue(), "数据库库存与订单数不一致：券 " + voucherId);
+        assertEquals(String.valueOf(voucher.getStock()), redisStock, "Redis 库存与数据库不一致：券 " + voucherId);
+        return orders.size();
+    }
+
+    private void awaitOrdersPersisted(long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            int persisted = voucherOrderService.query().in("voucher_id", voucherIds).count();
+            if (persisted >= expected) {
+                return;
+            }
+            TimeUnit.MILLISECONDS.sleep(200);
+        }
+        fail("等待订单落库超时");
+    }
+
+    private Long createSeckillVoucher(int stock) {
+        Voucher voucher = new Voucher();
+        voucher.setShopId(1L);
+        voucher.setTitle("压测券-" + stock);
+        voucher.setPayValue(100L);
+        voucher.setActualValue(1000L);
+        voucher.setType(1);
+        voucher.setStock(stock);
+        voucher.setBeginTime(LocalDateTime.now().minusMinutes(1));
+        voucher.setEndTime(LocalDateTime.now().plusHours(1));
+        voucherService.addSeckillVoucher(voucher);
+        return voucher.getId();
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+        return sorted[Math.max(index, 0)] / 1e6;
+    }
+
+    @AfterEach
+    void cleanUp() {
+        if (voucherIds.isEmpty()) {
+            return;
+        }
+        List<String> orderIds = voucherOrderService.query().in("voucher_id", voucherIds).list()
+                .stream().map(order -> order.getId().toString()).collect(Collectors.toList());
+        if (!orderIds.isEmpty()) {
+            stringRedisTemplate.opsForZSet().remove(ORDER_EXPIRE_KEY, orderIds.toArray());
+            stringRedisTemplate.delete(orderIds.stream().map(id -> SECKILL_RESULT_KEY + id).collect(Collectors.toList()));
+        }
+        voucherOrderService.remove(voucherOrderService.query().in("voucher_id", voucherIds).getWrapper());
+        seckillVoucherService.removeByIds(voucherIds);
+        voucherService.removeByIds(voucherIds);
+        for (Long voucherId : voucherIds) {
+            stringRedisTemplate.delete(SECKILL_STOCK_KEY + voucherId);
+            stringRedisTemplate.delete(SECKILL_ORDER_KEY + voucherId);
+        }
+        voucherIds.clear();
+    }
+}
@@ -0,0 +1,90 @@
+package com.hmdp;
+
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.bean.copier.CopyOptions;
+import com.hmdp.dto.UserDTO;
+import com.hmdp.entity.User;
+import com.hmdp.utils.UserDTOMapper;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 对比 hutool BeanUtil 与手写 UserDTOMapper 在登录、token 校验路径上的耗时（ns/op）和内存分配（bytes/op）
+ * @author Ghost
+ * @version 1.0
+ */
+class UserDTOMapperBenchmarkTests {
+
+    private static final int WARMUP = 200_000;
+    private static final int ITERATIONS = 1_000_000;
+
+    @Test
+    void compareWithBeanUtil() {
+        User user = new User().setId(1010L).setPhone("13686869696").setNickName("user_benchmark")
+                .setIcon("/imgs/icons/benchmark.jpg");
+        Map<String, Object> hash = BeanUtil.beanToMap(BeanUtil.copyProperties(user, UserDTO.class), new HashMap<>(),
+                CopyOptions.create().setIgnoreNullValue(true)
+                        .setFieldValueEditor((fieldName, fieldValue) -> fieldValue.toString()));
+        List<String> fields = new ArrayList<>();
+        hash.forEach((field, value) -> {
+            fields.add(field);
+            fields.add(value.toString());
+        });
+
+        // 1. 结果一致
+        assertEquals(BeanUtil.copyProperties(user, UserDTO.class), UserDTOMapper.fromUser(user));
+        assertEquals(hash, new HashMap<String, Object>(UserDTOMapper.toHash(UserDTOMapper.fromUser(user))));
+        assertEquals(BeanUtil.fillBeanWithMap(hash, new UserDTO(), false), UserDTOMapper.fromHashFields(fields));
+
+        // 2. 登录：User -> UserDTO -> Hash
+        report("登录（BeanUtil）", () -> BeanUtil.beanToMap(BeanUtil.copyProperties(user, UserDTO.class), new HashMap<>(),
+                CopyOptions.create().setIgnoreNullValue(true)
+                        .setFieldValueEditor((fieldName, fieldValue) -> fieldValue.toString())));
+        report("登录（UserDTOMapper）", () -> UserDTOMapper.toHash(UserDTOMapper.fromUser(user)));
+
+        // 3. token 校验：Hash -> UserDTO
+        report("token 校验（BeanUtil）", () -> {
+            Map<String, Object> userMap = new HashMap<>(fields.size());
+            for (int i = 0; i + 1 < fields.size(); i += 2) {
+                userMap.put(fields.get(i), fields.get(i + 1));
+            }
+            return BeanUtil.fillBeanWithMap(userMap, new UserDTO(), false);
+        });
+        report("token 校验（UserDTOMapper）", () -> UserDTOMapper.fromHashFields(fields));
+    }
+
+    private static void report(String name, Supplier<Object> task) {
+        Object sink = null;
+        for (int i = 0; i < WARMUP; i++) {
+            sink = task.get();
+        }
+        long bytesBefore = allocatedBytes();
+        long begin = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink = task.get();
+        }
+        long nanos = System.nanoTime() - begin;
+        long bytes = allocatedBytes() - bytesBefore;
+        System.out.printf("%s：%.1f ns/op，%.0f bytes/op（%s）%n",
+                name, (double) nanos / ITERATIONS, (double) bytes / ITERATIONS, sink.getClass().getSimpleName());
+    }
+
+    /**
+     * 当前线程累计分配的字节数，JVM 不支持时返回 0
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0L;
+    }
+}